@@ -31,13 +31,9 @@ Copyright (c) 2014, Sony Corporation
  */
 package com.example.sony.smarteyeglass.extension.samplearanimation;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.os.Handler;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.SparseArray;
@@ -47,6 +43,7 @@ import com.sony.smarteyeglass.SmartEyeglassControl.Intents;
 import com.sony.smarteyeglass.extension.sampleARAnimation.R;
 import com.sony.smarteyeglass.extension.util.SmartEyeglassControlUtils;
 import com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener;
+import com.sony.smarteyeglass.extension.util.ar.ARAnimator;
 import com.sony.smarteyeglass.extension.util.ar.CylindricalRenderObject;
 import com.sony.smarteyeglass.extension.util.ar.RenderObject;
 import com.sonyericsson.extras.liveware.aef.registration.Registration.SensorTypeValue;
@@ -115,14 +112,8 @@ public final class SampleARAnimationControl extends ControlExtension {
     /** Animation bitmap sequence */
     private SparseArray<Bitmap> imageMap = new SparseArray<Bitmap>();
 
-    /** Animation starts disabled */
-    private boolean isAnimation = false;
-
-    /** Animation frame counter */
-    private int frameCount = 0;
-
-    /** Animation timer */
-    private Timer timer;
+    /** Animation player, paced by the host */
+    private ARAnimator animator;
 
     /** Handlers for AR events */
     private final SmartEyeglassEventListener listener =
@@ -140,6 +131,20 @@ public final class SampleARAnimationControl extends ControlExtension {
                 return;
             }
         }
+        // Start sending frames once the animation socket is connected
+        @Override
+        public void onAREnableAnimationResponse(final int result) {
+            Log.d(Constants.LOG_TAG,
+                    "onAREnableAnimationResponse() result=" + result);
+            if (result != SmartEyeglassControl.Intents.AR_RESULT_OK) {
+                Log.d(Constants.LOG_TAG,
+                        "AR enable animation failed! errorcode = " + result);
+                return;
+            }
+            if (animator != null) {
+                animator.start();
+            }
+        }
         // Find bitmap to render when requested by AR engine
         @Override
         public void onARObjectRequest(final int objectId) {
@@ -149,6 +154,27 @@ public final class SampleARAnimationControl extends ControlExtension {
             // send bitmap
             utils.sendARObjectResponse(renderObj, 0);
         }
+        // Send the next frame once the host has drawn this one
+        @Override
+        public void onResultSendAnimationObject(
+                final int transactionNumber, final int result) {
+            if (animator != null) {
+                animator.onResultSendAnimationObject(transactionNumber, result);
+            }
+        }
+        // Pause the animation while the display is off
+        @Override
+        public void onDisplayStatus(final int displayStatus) {
+            if (animator != null) {
+                animator.onDisplayStateChanged();
+            }
+        }
+        @Override
+        public void onStandbyStatus(final int status) {
+            if (animator != null) {
+                animator.onDisplayStateChanged();
+            }
+        }
     };
 
     /**
@@ -330,65 +356,46 @@ public final class SampleARAnimationControl extends ControlExtension {
         imageMap.clear();
     }
 
-    /**
-     * Get next frame of the animation and send it with same object ID
-     */
-    private void updateAnimationimage() {
-        if (!isAnimation) {
-            return;
-        }
-
-        Bitmap bitmap = imageMap.get(frameCount);
-        if (bitmap != null) {
-            utils.sendARAnimationObject(OBJECT_ID, bitmap);
-            Log.d(Constants.LOG_TAG, "update animation image: " + frameCount);
-            frameCount++;
-        }
-        if (frameCount >= AnimationResources.MAX_FRAME) {
-            frameCount = 0;
-        }
-    }
-
     /** Start animation rendering operation */
     private void startARAnimation() {
-        utils.enableARAnimationRequest();
-
-        // Clear timer variable, if it is already holding a Timer object
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+        // Stop the animator, if one is already running
+        if (animator != null) {
+            animator.stop();
         }
 
-        // Create a new instance of Timer and set it to run with interval
-        // time value
-        timer = new Timer();
-        timer.schedule(new TimerTask() {
-            private Handler mHandler = new Handler();
+        // Send the frames of the image map in a loop, one frame
+        // per interval time or slower if the host needs more time
+        animator = new ARAnimator(utils, OBJECT_ID,
+                new ARAnimator.FrameSource() {
             @Override
-            public void run() {
-                mHandler.post(new Runnable() {
-                    public void run() {
-                        updateAnimationimage();
-                    }
-                });
+            public int getFrameCount() {
+                return AnimationResources.MAX_FRAME;
             }
-        }, 0, ANIMATION_INTERVAL_TIME);
+            @Override
+            public Bitmap getFrame(final int index) {
+                return imageMap.get(index);
+            }
+        }, ANIMATION_INTERVAL_TIME);
+
+        // The animator is started by the enable response
+        utils.enableARAnimationRequest();
 
         Log.d(Constants.LOG_TAG, "start animation");
-        isAnimation = true;
     }
 
     /** Stop animation rendering operation */
     private void stopARAnimation() {
-        // stop timer
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+        // stop animator
+        if (animator != null) {
+            animator.stop();
+            Log.d(Constants.LOG_TAG, "animation frames sent: "
+                    + animator.getSentFrameCount() + " skipped: "
+                    + animator.getSkippedFrameCount());
+            animator = null;
         }
 
         utils.disableARAnimationRequest();
 
         Log.d(Constants.LOG_TAG, "stop animation");
-        isAnimation = true;
     }
 }
@@ -39,11 +39,11 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.util.DisplayMetrics;
 import android.util.Log;
-import android.util.SparseArray;
 
 import com.sony.smarteyeglass.SmartEyeglassControl;
 import com.sony.smarteyeglass.SmartEyeglassControl.Intents;
 import com.sony.smarteyeglass.extension.sampleARLouvre.R;
+import com.sony.smarteyeglass.extension.util.ar.ARSceneManager;
 import com.sony.smarteyeglass.extension.util.ar.CylindricalRenderObject;
 import com.sony.smarteyeglass.extension.util.ar.GlassesRenderObject;
 import com.sony.smarteyeglass.extension.util.ar.RenderObject;
@@ -83,10 +83,11 @@ public final class SampleARCylindricalControl extends ControlExtension {
     private static final float VER_RANGE = 5.0f;
     /** The amount by which the vertical range can be changed with one action */
     private static final float RANGE_STEP = 2.5f;
+    /** Width of the view window in which objects are registered, in degrees */
+    private static final float SCENE_WINDOW_WIDTH = 90.0f;
 
-    /** Map of registered render objects to their associated bitmaps */
-    private SparseArray<RenderObject> objectMap =
-            new SparseArray<RenderObject>();
+    /** The panorama objects, registered when near the heading direction */
+    private ARSceneManager scene;
 
     /**
      *  Initialize program variables
@@ -136,6 +137,7 @@ public final class SampleARCylindricalControl extends ControlExtension {
                 Log.d(Constants.LOG_TAG,
                         "onARRegistrationResult() result=" + result
                         + " objectId=" + objectId);
+                scene.onARRegistrationResult(result, objectId);
             }
             // Find bitmap to render when a registered position is in view
             @Override
@@ -144,21 +146,21 @@ public final class SampleARCylindricalControl extends ControlExtension {
                 Log.d(Constants.LOG_TAG,
                         "onLocalRenderingObjectRequest() "
                         + " objectId=" + objectId);
-                // Search for the render object with requested object ID
-                RenderObject obj = objectMap.get(objectId);
-                if (obj == null) {
-                    if (iconObj.getObjectId() != objectId) {
-                        return;
-                    }
-                    obj = iconObj;
+                // Send the requested object if it is part of the panorama
+                if (scene.onARObjectRequest(objectId)) {
+                    return;
                 }
-                // Send the requested render object
-                utils.sendARObjectResponse(obj, 0);
+                // Otherwise send the fixed-position icon
+                if (iconObj == null || iconObj.getObjectId() != objectId) {
+                    return;
+                }
+                utils.sendARObjectResponse(iconObj, 0);
             }
         };
         utils = new SmartEyeglassControlUtils(hostAppPackageName, listener);
         utils.setRequiredApiVersion(SMARTEYEGLASS_API_VERSION);
         utils.activate(context);
+        scene = new ARSceneManager(utils, SCENE_WINDOW_WIDTH);
     }
 
     // Clean up data structures on termination.
@@ -211,7 +213,8 @@ public final class SampleARCylindricalControl extends ControlExtension {
      * to create a panoramic view made up of multiple images
      */
     private void loadResource() {
-        int objectId = 0;
+        // Object ID 0 stands for all objects when deleting, so start at 1
+        int objectId = 1;
         final List<RenderObject> list = new ArrayList<RenderObject>();
         final int order = context.getResources().getInteger(
                 R.integer.CYLINDRINCAL_OBJ_ORDER);
@@ -270,11 +273,15 @@ public final class SampleARCylindricalControl extends ControlExtension {
                     h, v));
         }
 
-        // Keep render objects in the object map and register them as AR objects
+        // Keep render objects in the scene, which registers the ones
+        // around the heading direction as AR objects
+        scene.clear();
         for (RenderObject obj : list) {
-            objectMap.put(obj.getObjectId(), obj);
-            registerObject(obj);
+            scene.add((CylindricalRenderObject) obj);
         }
+        scene.updateHeading(baseDeg);
+        Log.d(Constants.LOG_TAG, "registered objects: "
+                + scene.getRegisteredCount() + "/" + scene.getObjectCount());
 
         // Create a render object that uses Glasses Coordinate System
         // for the fixed-position icon
@@ -371,6 +378,9 @@ public final class SampleARCylindricalControl extends ControlExtension {
             baseDeg = headDirection;
             renderStart();
             isFirst = false;
+        } else if (!isFirst) {
+            // Register the objects coming into view, delete the others
+            scene.updateHeading(headDirection);
         }
     }
 
@@ -431,7 +441,7 @@ public final class SampleARCylindricalControl extends ControlExtension {
     @Override
     public void onStop() {
         super.onStop();
-        objectMap.clear();
+        scene.clear();
         iconEnabled = false;
     }
 }
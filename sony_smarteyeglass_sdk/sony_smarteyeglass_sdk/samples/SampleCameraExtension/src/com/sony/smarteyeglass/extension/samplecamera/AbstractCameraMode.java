@@ -67,14 +67,30 @@ public abstract class AbstractCameraMode {
      * @param context  The application context.
      */
     protected AbstractCameraMode(final Context context) {
+        this(context, false);
+    }
+
+    /**
+     * Creates a an instance of this class.
+     *
+     * @param context  The application context.
+     * @param streaming {@code true} if the mode receives a stream of frames,
+     *                  which are then recorded to a single file.
+     */
+    protected AbstractCameraMode(final Context context,
+            final boolean streaming) {
         painter = new DisplayPainter(context);
         SharedPreferences prefs =
                 PreferenceManager.getDefaultSharedPreferences(context);
         saves = prefs.getBoolean(context.getString(
                 R.string.preference_key_save_to_sdcard), true);
-        saver = (saves)
-                ? new AggressiveSaver()
-                : new DefaultSaver();
+        if (!saves) {
+            saver = new DefaultSaver();
+        } else if (streaming) {
+            saver = new StreamRecorderSaver();
+        } else {
+            saver = new WriteBehindSaver();
+        }
     }
 
     /**
@@ -240,6 +256,7 @@ public abstract class AbstractCameraMode {
         }
         willCloseCamera();
         utils.stopCamera();
+        saver.close();
         cameraOpened = false;
     }
 
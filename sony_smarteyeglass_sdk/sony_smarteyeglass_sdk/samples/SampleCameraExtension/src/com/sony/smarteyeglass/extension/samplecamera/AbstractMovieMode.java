@@ -55,7 +55,7 @@ public abstract class AbstractMovieMode extends AbstractCameraMode {
      * @param context The application context.
      */
     public AbstractMovieMode(final Context context) {
-        super(context);
+        super(context, true);
     }
 
     /**
@@ -65,7 +65,11 @@ public class DefaultSaver implements Saver {
     }
 
     @Override
-    public final int getIndex() {
+    public void close() {
+    }
+
+    @Override
+    public int getIndex() {
         return saveFileIndex;
     }
 
@@ -81,7 +85,7 @@ public class DefaultSaver implements Saver {
      *            The extension of the file name.
      * @return The file.
      */
-    private File createFile(final String ext) {
+    protected final File createFile(final String ext) {
         String fileName = prefix
                 + String.format("%04d", saveFileIndex) + ext;
         ++saveFileIndex;
@@ -32,23 +32,145 @@ Copyright (c) 2014, Sony Corporation
 package com.sony.smarteyeglass.extension.samplecamera;
 
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.util.Log;
 
 import com.sony.smarteyeglass.SmartEyeglassControl.Intents;
 import com.sony.smarteyeglass.extension.util.CameraEvent;
+import com.sony.smarteyeglass.extension.util.CameraFrameProcessor;
 import com.sony.smarteyeglass.extension.util.ControlCameraException;
 import com.sony.smarteyeglass.extension.util.SmartEyeglassControlUtils;
 
 /**
  * The implementation of JpegStream mode.
+ * Streamed frames are decoded and analyzed on worker threads by a
+ * {@link CameraFrameProcessor}, and the average brightness is displayed.
+ * Each stage keeps its buffers between frames, and analyzed bitmaps go back
+ * to the decoding stage to be decoded into again, so that streaming does not
+ * allocate per frame.
  */
 public final class JpegStreamMode extends AbstractMovieMode {
 
+    /** The factor by which the frames are scaled down for analysis. */
+    private static final int SAMPLE_SIZE = 2;
+
+    /** The index of the decoding stage. */
+    private static final int DECODE_STAGE = 0;
+
+    /** The index of the analysis stage. */
+    private static final int ANALYZE_STAGE = 1;
+
+    /**
+     * The number of analyzed bitmaps kept for reuse, enough for the frames
+     * between the two stages.
+     */
+    private static final int FREE_BITMAP_COUNT =
+            CameraFrameProcessor.DEFAULT_QUEUE_CAPACITY + 2;
+
     /** The recording mode. */
     private final int mode;
 
+    /** The processor of the streamed frames, while the camera is open. */
+    private CameraFrameProcessor processor;
+
+    /** The average brightness of the last analyzed frame, or -1. */
+    private int luma = -1;
+
+    /**
+     * Decodes a JPEG frame to a scaled-down bitmap, reusing a bitmap handed
+     * back by the analysis stage when there is one.
+     */
+    private static final class DecodeStage implements CameraFrameProcessor.Stage {
+
+        /** The decode options, kept between frames. */
+        private final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        /** Bitmaps free to decode into. */
+        private final BlockingQueue<Bitmap> freeBitmaps;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param freeBitmaps
+         *            The bitmaps free to decode into.
+         */
+        DecodeStage(final BlockingQueue<Bitmap> freeBitmaps) {
+            this.freeBitmaps = freeBitmaps;
+            options.inSampleSize = SAMPLE_SIZE;
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            options.inMutable = true;
+        }
+
+        @Override
+        public Object process(final Object input) {
+            byte[] data = (byte[]) input;
+            options.inBitmap = freeBitmaps.poll();
+            try {
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            } catch (IllegalArgumentException e) {
+                if (options.inBitmap == null) {
+                    throw e;
+                }
+                // The free bitmap is too small for this frame
+                options.inBitmap.recycle();
+                options.inBitmap = null;
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            } finally {
+                options.inBitmap = null;
+            }
+        }
+    }
+
+    /**
+     * Computes the average brightness of a bitmap, from 0 to 255, and hands
+     * the bitmap back to the decoding stage.
+     */
+    private static final class AnalyzeStage implements CameraFrameProcessor.Stage {
+
+        /** The pixel buffer, kept between frames of the same size. */
+        private int[] pixels;
+
+        /** Bitmaps free to decode into. */
+        private final BlockingQueue<Bitmap> freeBitmaps;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param freeBitmaps
+         *            The queue to hand analyzed bitmaps back to.
+         */
+        AnalyzeStage(final BlockingQueue<Bitmap> freeBitmaps) {
+            this.freeBitmaps = freeBitmaps;
+        }
+
+        @Override
+        public Object process(final Object input) {
+            Bitmap bitmap = (Bitmap) input;
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int count = width * height;
+            if (pixels == null || pixels.length != count) {
+                pixels = new int[count];
+            }
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            if (!freeBitmaps.offer(bitmap)) {
+                bitmap.recycle();
+            }
+
+            long sum = 0;
+            for (int pixel : pixels) {
+                sum += (77 * ((pixel >> 16) & 0xff) + 150 * ((pixel >> 8) & 0xff)
+                        + 29 * (pixel & 0xff)) >> 8;
+            }
+            return Integer.valueOf((int) (sum / Math.max(1, count)));
+        }
+    }
+
     /**
      * Creates a new instance.
      *
@@ -74,18 +196,60 @@ public final class JpegStreamMode extends AbstractMovieMode {
         return mode;
     }
 
+    @Override
+    protected void handlePictureData(
+            final BitmapDisplay delegate, final byte[] data) {
+        if (processor != null) {
+            processor.submit(data);
+        }
+    }
+
     @Override
     protected void addMessages(final List<String> list) {
         list.add("Rec: " + getSaver().getIndex());
+        if (luma >= 0 && processor != null) {
+            list.add("Luma: " + luma
+                    + " (" + processor.getAverageStageTime(DECODE_STAGE) / 1000
+                    + "+" + processor.getAverageStageTime(ANALYZE_STAGE) / 1000
+                    + " ms)");
+        }
     }
 
     @Override
     protected void willOpenCamera(final SmartEyeglassControlUtils utils)
             throws ControlCameraException {
         Log.d(Constants.LOG_TAG, "startCamera ");
+        processor = new CameraFrameProcessor(
+                new CameraFrameProcessor.ResultListener() {
+            @Override
+            public void onFrameProcessed(final Object result) {
+                luma = (Integer) result;
+            }
+        });
+        // New stages for each session, since the stages of a stopped
+        // processor may still be finishing a frame.
+        BlockingQueue<Bitmap> freeBitmaps =
+                new ArrayBlockingQueue<Bitmap>(FREE_BITMAP_COUNT);
+        processor.addStage(new DecodeStage(freeBitmaps));
+        processor.addStage(new AnalyzeStage(freeBitmaps));
+        processor.start();
+        // Frames that are only previewed may be dropped when the display
+        // falls behind; frames that are saved must all be delivered.
+        utils.setCameraDeliveryPolicy((saves())
+                ? SmartEyeglassControlUtils.CAMERA_DELIVERY_ALL
+                : SmartEyeglassControlUtils.CAMERA_DELIVERY_LATEST);
         utils.startCamera();
         if (!saves()) {
             return;
         }
     }
+
+    @Override
+    protected void willCloseCamera() {
+        if (processor != null) {
+            processor.stop();
+            processor = null;
+        }
+        luma = -1;
+    }
 }
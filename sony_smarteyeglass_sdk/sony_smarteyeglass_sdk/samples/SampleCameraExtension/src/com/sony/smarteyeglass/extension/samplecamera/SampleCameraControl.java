@@ -62,6 +62,9 @@ public final class SampleCameraControl extends ControlExtension {
     /** The camera mode. */
     private AbstractCameraMode mode;
 
+    /** The last bitmap not drawn while the display was off, or null. */
+    private Bitmap suspendedBitmap;
+
     /**
      * Creates an instance of this control class.
      *
@@ -94,12 +97,29 @@ public final class SampleCameraControl extends ControlExtension {
                 Log.d(Constants.LOG_TAG, "onCameraReceivedFile: " + filePath);
                 mode.closeCamera(utils);
             }
+            // Draw the frame skipped while the display was off
+            @Override
+            public void onDisplayStatus(final int displayStatus) {
+                showSuspendedBitmap();
+            }
+            @Override
+            public void onStandbyStatus(final int status) {
+                showSuspendedBitmap();
+            }
         };
         utils = new SmartEyeglassControlUtils(hostAppPackageName, listener);
         utils.setRequiredApiVersion(SMARTEYEGLASS_API_VERSION);
         utils.activate(context);
     }
 
+    /** Shows the bitmap skipped while the display was not visible. */
+    private void showSuspendedBitmap() {
+        if (!utils.isDisplaySuspended() && suspendedBitmap != null) {
+            showBitmap(suspendedBitmap);
+            suspendedBitmap = null;
+        }
+    }
+
     // Clean up data structures on termination.
     @Override
     public void onDestroy() {
@@ -130,6 +150,13 @@ public final class SampleCameraControl extends ControlExtension {
         mode.setBitmapDisplay(new BitmapDisplay() {
             @Override
             public void displayBitmap(final Bitmap bitmap) {
+                // Camera frames keep coming while the display is off,
+                // there is no need to convert and send them.
+                if (utils.isDisplaySuspended()) {
+                    suspendedBitmap = bitmap;
+                    return;
+                }
+                suspendedBitmap = null;
                 showBitmap(bitmap);
             }
         });
@@ -149,8 +176,11 @@ public final class SampleCameraControl extends ControlExtension {
     // Clean up any open files and reset mode when app is paused.
     @Override
     public void onPause() {
+        // Log how well the camera stream kept up
+        utils.getCameraStreamStats().dump(Constants.LOG_TAG);
         mode.closeCamera(utils);
         mode = null;
+        suspendedBitmap = null;
     }
 
     // Respond to tap on touch pad by switching camera modes.
@@ -1,82 +0,0 @@
-/*
-Copyright (c) 2011, Sony Mobile Communications Inc.
-Copyright (c) 2014, Sony Corporation
-
- All rights reserved.
-
- Redistribution and use in source and binary forms, with or without
- modification, are permitted provided that the following conditions are met:
-
- * Redistributions of source code must retain the above copyright notice, this
- list of conditions and the following disclaimer.
-
- * Redistributions in binary form must reproduce the above copyright notice,
- this list of conditions and the following disclaimer in the documentation
- and/or other materials provided with the distribution.
-
- * Neither the name of the Sony Mobile Communications Inc.
- nor the names of its contributors may be used to endorse or promote
- products derived from this software without specific prior written permission.
-
- THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
- ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
- WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
- DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
- FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
- DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
- SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
- CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
- OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
- OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- */
-package com.sony.smarteyeglass.extension.samplecamera;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-
-import android.os.AsyncTask;
-import android.util.Log;
-
-/**
- * Save photo data with a worker thread.
- */
-public final class SavePhotoTask extends AsyncTask<byte[], String, String> {
-
-    /** The file to save data. */
-    private final File file;
-
-    /**
-     * Creates a new instance.
-     *
-     * @param file The file to save data.
-     */
-    public SavePhotoTask(final File file) {
-        this.file = file;
-    }
-
-    @Override
-    protected String doInBackground(final byte[]... jpeg) {
-        File photo = file;
-        if (photo.exists()) {
-            photo.delete();
-        }
-        FileOutputStream out = null;
-        try {
-            out = new FileOutputStream(photo.getPath());
-            out.write(jpeg[0]);
-            Log.d(Constants.LOG_TAG, "Saved photo to " + file.getName());
-        } catch (IOException e) {
-            Log.e(Constants.LOG_TAG, "Exception in saving photo", e);
-        } finally {
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (IOException e) {
-                    Log.e(Constants.LOG_TAG, "Exception in saving photo", e);
-                }
-            }
-        }
-        return null;
-    }
-}
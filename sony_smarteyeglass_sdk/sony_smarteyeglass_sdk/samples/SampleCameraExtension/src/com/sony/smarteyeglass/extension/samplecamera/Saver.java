@@ -53,6 +53,12 @@ public interface Saver {
      */
     int getIndex();
 
+    /**
+     * Finishes saving. Called when the camera is closed. Data saved after
+     * this starts a new recording.
+     */
+    void close();
+
     /**
      * Creates a file to save JPEG file.
      *
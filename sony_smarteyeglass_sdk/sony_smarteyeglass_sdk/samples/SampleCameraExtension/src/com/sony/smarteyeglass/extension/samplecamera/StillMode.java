@@ -32,10 +32,11 @@ Copyright (c) 2014, Sony Corporation
 package com.sony.smarteyeglass.extension.samplecamera;
 
 import android.content.Context;
-import android.graphics.BitmapFactory;
+import android.graphics.Bitmap;
 import android.util.Log;
 
 import com.sony.smarteyeglass.SmartEyeglassControl.Intents;
+import com.sony.smarteyeglass.extension.util.CameraPreviewDecoder;
 import com.sony.smarteyeglass.extension.util.ControlCameraException;
 import com.sony.smarteyeglass.extension.util.SmartEyeglassControlUtils;
 
@@ -44,6 +45,9 @@ import com.sony.smarteyeglass.extension.util.SmartEyeglassControlUtils;
  */
 public final class StillMode extends AbstractStillMode {
 
+    /** Decodes pictures at the display size. */
+    private final CameraPreviewDecoder decoder;
+
     /**
      * Creates a new instance.
      *
@@ -52,6 +56,8 @@ public final class StillMode extends AbstractStillMode {
      */
     public StillMode(final Context context) {
         super(context);
+        ScreenSize size = new ScreenSize(context);
+        decoder = new CameraPreviewDecoder(size.getWidth(), size.getHeight());
     }
 
     @Override
@@ -61,7 +67,11 @@ public final class StillMode extends AbstractStillMode {
 
     @Override
     protected void handlePictureData(final BitmapDisplay d, final byte[] data) {
-        d.displayBitmap(BitmapFactory.decodeByteArray(data, 0, data.length));
+        // Decodes only as many pixels as the display can show.
+        Bitmap preview = decoder.decode(data, data.length);
+        if (preview != null) {
+            d.displayBitmap(preview);
+        }
     }
 
     @Override
@@ -0,0 +1,313 @@
+/*
+Copyright (c) 2011, Sony Mobile Communications Inc.
+Copyright (c) 2014, Sony Corporation
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications Inc.
+ nor the names of its contributors may be used to endorse or promote
+ products derived from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sony.smarteyeglass.extension.samplecamera;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * The delegate to record streamed JPEG frames to SD card. Instead of one file
+ * per frame, all the frames of a recording are appended to a single Motion
+ * JPEG file (.mjpg), which many players can show as it is.
+ * <p>
+ * Frames are written through one {@code FileChannel} by a dedicated writer
+ * thread. When the recording is closed, a frame index is written next to it
+ * (.idx), so that a frame can be found without scanning the stream. The index
+ * holds the frame count as an {@code int}, followed by the file offset
+ * ({@code long}), length ({@code int}) and time since the start of the
+ * recording in milliseconds ({@code int}) of each frame.
+ * </p>
+ */
+public final class StreamRecorderSaver extends DefaultSaver {
+
+    /** The default number of frames between two syncs to storage. */
+    public static final int DEFAULT_SYNC_INTERVAL = 30;
+
+    /** The number of frames that can wait for the writer thread. */
+    private static final int QUEUE_CAPACITY = 32;
+
+    /** Marks the end of a recording in the queue. */
+    private static final byte[] END_OF_RECORDING = new byte[0];
+
+    /** How long close waits for room in the queue, in milliseconds. */
+    private static final long CLOSE_TIMEOUT_MS = 500;
+
+    /** The number of frames between two syncs, 0 to sync only on close. */
+    private final int syncInterval;
+
+    /** The writer of the current recording, or null. */
+    private Writer writer;
+
+    /** The number of frames saved in the current recording. */
+    private int frameCount;
+
+    /** The number of frames dropped because the writer fell behind. */
+    private int droppedCount;
+
+    /**
+     * Creates a new instance that syncs every
+     * {@link #DEFAULT_SYNC_INTERVAL} frames.
+     */
+    public StreamRecorderSaver() {
+        this(DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param syncInterval
+     *            The number of frames between two syncs to storage, 0 to
+     *            sync only when the recording is closed.
+     */
+    public StreamRecorderSaver(final int syncInterval) {
+        if (syncInterval < 0) {
+            throw new IllegalArgumentException("syncInterval has illegal value");
+        }
+        this.syncInterval = syncInterval;
+    }
+
+    @Override
+    public void save(final byte[] data) {
+        if (writer == null) {
+            File file = createFile(".mjpg");
+            writer = new Writer(file, syncInterval);
+            writer.start();
+            frameCount = 0;
+        }
+        if (writer.queue.offer(data)) {
+            ++frameCount;
+        } else {
+            ++droppedCount;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        Writer w = writer;
+        writer = null;
+        // Waits only if the queue is full; the writer finishes on its own.
+        try {
+            if (!w.isAlive()
+                    || !w.queue.offer(END_OF_RECORDING, CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // The writer died on an error or is stuck, so the frames
+                // still waiting are dropped and the end is queued without
+                // blocking.
+                ArrayList<byte[]> discarded = new ArrayList<byte[]>();
+                w.queue.drainTo(discarded);
+                droppedCount += discarded.size();
+                frameCount -= discarded.size();
+                w.queue.offer(END_OF_RECORDING);
+                Log.w(Constants.LOG_TAG, "Recording writer behind, dropped "
+                        + discarded.size() + " frames");
+            }
+        } catch (InterruptedException e) {
+            w.interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of frames saved in the current recording.
+     *
+     * @return The frame count.
+     */
+    @Override
+    public int getIndex() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of frames not saved because the writer thread fell
+     * behind.
+     *
+     * @return The dropped frame count.
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Writes the frames of one recording.
+     */
+    private static final class Writer extends Thread {
+
+        /** The frames waiting to be written. */
+        private final ArrayBlockingQueue<byte[]> queue =
+                new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+
+        /** The Motion JPEG file. */
+        private final File file;
+
+        /** The number of frames between two syncs. */
+        private final int syncInterval;
+
+        /** The file offsets of the frames. */
+        private long[] offsets = new long[256];
+
+        /** The lengths of the frames. */
+        private int[] lengths = new int[256];
+
+        /** The times of the frames since the start of the recording. */
+        private int[] times = new int[256];
+
+        /** The number of frames written. */
+        private int count;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param file
+         *            The file to record to.
+         * @param syncInterval
+         *            The number of frames between two syncs.
+         */
+        Writer(final File file, final int syncInterval) {
+            super("StreamRecorder");
+            this.file = file;
+            this.syncInterval = syncInterval;
+        }
+
+        @Override
+        public void run() {
+            long start = SystemClock.elapsedRealtime();
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(file);
+                FileChannel channel = out.getChannel();
+                while (true) {
+                    byte[] data = queue.take();
+                    if (data == END_OF_RECORDING) {
+                        break;
+                    }
+                    addIndexEntry(channel.position(), data.length,
+                            (int) (SystemClock.elapsedRealtime() - start));
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    if (syncInterval > 0 && count % syncInterval == 0) {
+                        channel.force(false);
+                    }
+                }
+                channel.force(true);
+                Log.d(Constants.LOG_TAG, "Recorded " + count + " frames to "
+                        + file.getName());
+            } catch (IOException e) {
+                Log.e(Constants.LOG_TAG, "Exception in recording", e);
+            } catch (InterruptedException e) {
+                Log.w(Constants.LOG_TAG, "Recording interrupted", e);
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        Log.e(Constants.LOG_TAG, "Exception in recording", e);
+                    }
+                }
+            }
+            writeIndex();
+        }
+
+        /**
+         * Adds a frame to the index.
+         *
+         * @param offset
+         *            The file offset of the frame.
+         * @param length
+         *            The length of the frame.
+         * @param time
+         *            The time since the start of the recording.
+         */
+        private void addIndexEntry(final long offset, final int length,
+                final int time) {
+            if (count == offsets.length) {
+                int size = count * 2;
+                long[] newOffsets = new long[size];
+                int[] newLengths = new int[size];
+                int[] newTimes = new int[size];
+                System.arraycopy(offsets, 0, newOffsets, 0, count);
+                System.arraycopy(lengths, 0, newLengths, 0, count);
+                System.arraycopy(times, 0, newTimes, 0, count);
+                offsets = newOffsets;
+                lengths = newLengths;
+                times = newTimes;
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            times[count] = time;
+            ++count;
+        }
+
+        /**
+         * Writes the frame index next to the recording.
+         */
+        private void writeIndex() {
+            String name = file.getName();
+            File indexFile = new File(file.getParentFile(),
+                    name.substring(0, name.lastIndexOf('.')) + ".idx");
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(indexFile)));
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(offsets[i]);
+                    out.writeInt(lengths[i]);
+                    out.writeInt(times[i]);
+                }
+            } catch (IOException e) {
+                Log.e(Constants.LOG_TAG, "Exception in writing index", e);
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        Log.e(Constants.LOG_TAG, "Exception in writing index", e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+Copyright (c) 2011, Sony Mobile Communications Inc.
+Copyright (c) 2014, Sony Corporation
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications Inc.
+ nor the names of its contributors may be used to endorse or promote
+ products derived from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sony.smarteyeglass.extension.samplecamera;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import android.util.Log;
+
+/**
+ * The delegate to save JPEG photos to SD card from a single I/O thread.
+ * <p>
+ * Photos wait in a bounded queue. The I/O thread takes all waiting photos
+ * at once and writes each to its own file with a single write call. When
+ * the queue is full because storage is slow, {@link #save(byte[])} drops the
+ * photo right away and counts it, without using up a file name, so that
+ * photos do not pile up in memory and the caller never waits.
+ * {@link #close()} lets the I/O thread write all waiting photos and finish,
+ * waiting a bounded time for space to queue the end.
+ * </p>
+ */
+public final class WriteBehindSaver extends DefaultSaver {
+
+    /** The default number of photos that can wait to be written. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    /** How long close waits for space in the queue, in milliseconds. */
+    private static final long CLOSE_TIMEOUT_MS = 500;
+
+    /** Marks the end of the photos in the queue. */
+    private static final Photo END_OF_PHOTOS = new Photo(null, null);
+
+    /** */
+    private final int queueCapacity;
+
+    /** The I/O thread, or null if not running. */
+    private IoThread ioThread;
+
+    /** The number of photos queued for writing. */
+    private int queuedCount;
+
+    /** The number of photos dropped because the queue was full. */
+    private int droppedCount;
+
+    /**
+     * Creates a new instance with the default queue capacity.
+     */
+    public WriteBehindSaver() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param queueCapacity
+     *            The number of photos that can wait to be written.
+     */
+    public WriteBehindSaver(final int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity has illegal value");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void save(final byte[] data) {
+        if (ioThread == null) {
+            ioThread = new IoThread(queueCapacity);
+            ioThread.start();
+        }
+        // Only this thread adds to the queue, so there is still space
+        // when the offer is made. The file name is only taken then.
+        if (ioThread.queue.remainingCapacity() == 0) {
+            ++droppedCount;
+            Log.w(Constants.LOG_TAG, "Storage too slow, dropped photo");
+            return;
+        }
+        ioThread.queue.offer(new Photo(createJpegFile(), data));
+        ++queuedCount;
+    }
+
+    @Override
+    public void close() {
+        if (ioThread == null) {
+            return;
+        }
+        IoThread thread = ioThread;
+        ioThread = null;
+        try {
+            if (!thread.isAlive()
+                    || !thread.queue.offer(END_OF_PHOTOS, CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // Storage is stuck, so the photos still waiting are dropped
+                // and the end is queued without blocking.
+                List<Photo> discarded = new ArrayList<Photo>();
+                thread.queue.drainTo(discarded);
+                droppedCount += discarded.size();
+                thread.queue.offer(END_OF_PHOTOS);
+                Log.w(Constants.LOG_TAG, "Storage too slow, dropped "
+                        + discarded.size() + " photos");
+            }
+        } catch (InterruptedException e) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of photos queued for writing.
+     *
+     * @return The queued photo count.
+     */
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * Returns the number of photos dropped because storage was too slow.
+     *
+     * @return The dropped photo count.
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * A photo waiting to be written.
+     */
+    private static final class Photo {
+
+        /** The file to write to. */
+        private final File file;
+
+        /** The JPEG data. */
+        private final byte[] data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param file
+         *            The file to write to.
+         * @param data
+         *            The JPEG data.
+         */
+        Photo(final File file, final byte[] data) {
+            this.file = file;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Writes the queued photos.
+     */
+    private static final class IoThread extends Thread {
+
+        /** The photos waiting to be written. */
+        private final ArrayBlockingQueue<Photo> queue;
+
+        /** The photos taken from the queue in one go. */
+        private final List<Photo> batch = new ArrayList<Photo>();
+
+        /**
+         * Creates a new instance.
+         *
+         * @param capacity
+         *            The queue capacity.
+         */
+        IoThread(final int capacity) {
+            super("WriteBehindSaver");
+            queue = new ArrayBlockingQueue<Photo>(capacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch);
+                    for (Photo photo : batch) {
+                        if (photo == END_OF_PHOTOS) {
+                            return;
+                        }
+                        write(photo);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Log.w(Constants.LOG_TAG, "Saving interrupted", e);
+            }
+        }
+
+        /**
+         * Writes one photo.
+         *
+         * @param photo
+         *            The photo.
+         */
+        private void write(final Photo photo) {
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(photo.file);
+                out.write(photo.data);
+                Log.d(Constants.LOG_TAG, "Saved photo to " + photo.file.getName());
+            } catch (IOException e) {
+                Log.e(Constants.LOG_TAG, "Exception in saving photo", e);
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        Log.e(Constants.LOG_TAG, "Exception in saving photo", e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+Copyright (c) 2013 Sony Mobile Communications AB
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications AB nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonyericsson.extras.liveware.extension.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+/**
+ * A size-bounded cache of images that are already encoded for the
+ * accessory, keyed by image resource id, target format and variant.
+ * <p>
+ * The variant, see {@link #getVariant(Resources, BitmapFactory.Options)},
+ * stands for the resource configuration and the decode options, so that
+ * an image decoded for another density, locale or night mode, or with
+ * other options, is not served after a configuration change.
+ * </p><p>
+ * Showing the same resource again, for example a menu, an icon or a splash
+ * screen, then only costs the intent send. The least recently used images
+ * are evicted when the total size of the cached data exceeds the limit.
+ * The cached arrays are shared and must not be modified.
+ * </p>
+ */
+public final class EncodedImageCache {
+
+    /** PNG encoded image data. */
+    public static final int FORMAT_PNG = 0;
+
+    /** SmartEyeglass 8-bit monochrome raw image data. */
+    public static final int FORMAT_RAW_MONOCHROME = 1;
+
+    /** The default size limit of the shared cache, in bytes. */
+    public static final int DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    /** */
+    private static EncodedImageCache sInstance;
+
+    /** */
+    private final LinkedHashMap<Key, EncodedImage> mImages =
+            new LinkedHashMap<Key, EncodedImage>(16, 0.75f, true);
+
+    /** */
+    private int mMaxSize;
+
+    /** */
+    private int mSize;
+
+    /**
+     * Identifies a cached image.
+     */
+    private static final class Key {
+
+        /** */
+        private final int mResourceId;
+
+        /** */
+        private final int mFormat;
+
+        /** */
+        private final String mVariant;
+
+        /** */
+        Key(final int resourceId, final int format, final String variant) {
+            mResourceId = resourceId;
+            mFormat = format;
+            mVariant = variant;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mResourceId == other.mResourceId && mFormat == other.mFormat
+                    && mVariant.equals(other.mVariant);
+        }
+
+        @Override
+        public int hashCode() {
+            return (mResourceId * 31 + mFormat) * 31 + mVariant.hashCode();
+        }
+    }
+
+    /**
+     * Encoded image data together with the size of the image.
+     */
+    public static final class EncodedImage {
+
+        /** */
+        private final byte[] mData;
+
+        /** */
+        private final int mWidth;
+
+        /** */
+        private final int mHeight;
+
+        /**
+         * Creates an encoded image.
+         *
+         * @param data   The encoded data.
+         * @param width  The image width.
+         * @param height The image height.
+         */
+        public EncodedImage(final byte[] data, final int width, final int height) {
+            mData = data;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        /**
+         * @return The encoded data.
+         */
+        public byte[] getData() {
+            return mData;
+        }
+
+        /**
+         * @return The image width.
+         */
+        public int getWidth() {
+            return mWidth;
+        }
+
+        /**
+         * @return The image height.
+         */
+        public int getHeight() {
+            return mHeight;
+        }
+    }
+
+    /**
+     * Returns the cache shared by all controls of the process.
+     *
+     * @return The shared cache.
+     */
+    public static synchronized EncodedImageCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new EncodedImageCache(DEFAULT_MAX_SIZE);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize The size limit, in bytes of encoded data.
+     */
+    public EncodedImageCache(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the variant of images decoded from the given resources with
+     * the given options. It covers the density, locale and night mode of
+     * the resource configuration, and the decode options that change the
+     * decoded image.
+     *
+     * @param resources The resources the images are decoded from.
+     * @param options   The decode options, or null.
+     * @return The variant.
+     */
+    public static String getVariant(final Resources resources, final BitmapFactory.Options options) {
+        StringBuilder variant = new StringBuilder();
+        Configuration config = resources.getConfiguration();
+        // Configuration.densityDpi needs API 17, DisplayMetrics only API 4
+        variant.append(resources.getDisplayMetrics().densityDpi).append('/')
+                .append(config.locale);
+        // Night mode resources and Configuration.uiMode came with API 8
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO) {
+            variant.append('/').append(config.uiMode & Configuration.UI_MODE_NIGHT_MASK);
+        }
+        if (options != null) {
+            variant.append('/').append(options.inDensity)
+                    .append('/').append(options.inTargetDensity)
+                    .append('/').append(options.inScaled)
+                    .append('/').append(options.inSampleSize)
+                    .append('/').append(options.inPreferredConfig);
+        }
+        return variant.toString();
+    }
+
+    /**
+     * Looks up an encoded image.
+     *
+     * @param resourceId The image resource id.
+     * @param format     The target format.
+     * @param variant    The variant, see
+     *                   {@link #getVariant(Resources, BitmapFactory.Options)}.
+     * @return The encoded image, or null if it is not cached.
+     */
+    public synchronized EncodedImage get(final int resourceId, final int format,
+            final String variant) {
+        return mImages.get(new Key(resourceId, format, variant));
+    }
+
+    /**
+     * Adds an encoded image. Images larger than the size limit are not
+     * cached.
+     *
+     * @param resourceId The image resource id.
+     * @param format     The target format.
+     * @param variant    The variant, see
+     *                   {@link #getVariant(Resources, BitmapFactory.Options)}.
+     * @param image      The encoded image.
+     */
+    public synchronized void put(final int resourceId, final int format, final String variant,
+            final EncodedImage image) {
+        Key key = new Key(resourceId, format, variant);
+        EncodedImage previous = mImages.remove(key);
+        if (previous != null) {
+            mSize -= previous.getData().length;
+        }
+        if (image.getData().length > mMaxSize) {
+            return;
+        }
+        mImages.put(key, image);
+        mSize += image.getData().length;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Changes the size limit, evicting images if needed.
+     *
+     * @param maxSize The size limit, in bytes of encoded data.
+     */
+    public synchronized void setMaxSize(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * @return The total size of the cached data, in bytes.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Removes all images.
+     */
+    public synchronized void clear() {
+        mImages.clear();
+        mSize = 0;
+    }
+
+    /** */
+    private void trimToSize(final int maxSize) {
+        Iterator<Map.Entry<Key, EncodedImage>> it = mImages.entrySet().iterator();
+        while (mSize > maxSize && it.hasNext()) {
+            mSize -= it.next().getValue().getData().length;
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+Copyright (c) 2013 Sony Mobile Communications AB
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications AB nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonyericsson.extras.liveware.extension.util.control;
+
+import java.io.ByteArrayOutputStream;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+
+import com.sonyericsson.extras.liveware.aef.control.Control;
+
+/**
+ * Encodes bitmaps in a standard compressed image format, PNG by default.
+ * <p>
+ * The output buffer is kept between calls, so it only grows until it fits
+ * the largest image, and the returned array is reused while the encoded
+ * size stays the same. Note that Android ignores the quality for PNG, which
+ * is always lossless. For content that changes every frame, JPEG with a
+ * moderate quality is considerably faster to encode and smaller to send.
+ * Instances are not thread safe.
+ * </p>
+ */
+public class CompressedImageEncoder implements ControlImageEncoder {
+
+    /** The initial size of the output buffer. */
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    /** */
+    private final CompressFormat mFormat;
+
+    /** */
+    private final int mQuality;
+
+    /** */
+    private final OutputBuffer mOutputStream = new OutputBuffer();
+
+    /**
+     * The last encoded data. The intent extras are copied when the broadcast
+     * is sent, so it can be reused for the next image of the same size.
+     */
+    private byte[] mResult;
+
+    /**
+     * An output stream whose buffer can be copied into an existing array.
+     */
+    private static final class OutputBuffer extends ByteArrayOutputStream {
+
+        /** */
+        OutputBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        /**
+         * Copies the written data.
+         *
+         * @param reuse The array to copy to, or null.
+         * @return {@code reuse} if its length is exactly the written size,
+         *         otherwise a new array.
+         */
+        byte[] toByteArray(final byte[] reuse) {
+            byte[] result = (reuse != null && reuse.length == count) ? reuse : new byte[count];
+            System.arraycopy(buf, 0, result, 0, count);
+            return result;
+        }
+    }
+
+    /**
+     * Creates a lossless PNG encoder.
+     */
+    public CompressedImageEncoder() {
+        this(CompressFormat.PNG, 100);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param format  The compressed format.
+     * @param quality The quality from 0 to 100, ignored for PNG.
+     */
+    public CompressedImageEncoder(final CompressFormat format, final int quality) {
+        if (format == null) {
+            throw new IllegalArgumentException("format == null");
+        }
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality has illegal value");
+        }
+        mFormat = format;
+        mQuality = quality;
+    }
+
+    /**
+     * Encodes a bitmap.
+     *
+     * @param bitmap The bitmap to encode.
+     * @return The encoded data. The array may be overwritten by the next
+     *         call, so copy it to keep it.
+     */
+    public byte[] encode(final Bitmap bitmap) {
+        mOutputStream.reset();
+        bitmap.compress(mFormat, mQuality, mOutputStream);
+        mResult = mOutputStream.toByteArray(mResult);
+        return mResult;
+    }
+
+    @Override
+    public void putImageData(final Intent intent, final Bitmap bitmap) {
+        intent.putExtra(Control.Intents.EXTRA_DATA, encode(bitmap));
+    }
+}
@@ -41,7 +41,6 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.graphics.Bitmap;
-import android.graphics.Bitmap.CompressFormat;
 import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
@@ -54,10 +53,10 @@ import com.sonyericsson.extras.liveware.aef.registration.Registration.DeviceColu
 import com.sonyericsson.extras.liveware.aef.registration.Registration.HostApp;
 import com.sonyericsson.extras.liveware.aef.registration.Registration.HostAppColumns;
 import com.sonyericsson.extras.liveware.extension.util.Dbg;
+import com.sonyericsson.extras.liveware.extension.util.EncodedImageCache;
+import com.sonyericsson.extras.liveware.extension.util.EncodedImageCache.EncodedImage;
 import com.sonyericsson.extras.liveware.extension.util.ExtensionUtils;
 
-import java.io.ByteArrayOutputStream;
-
 /**
  * The control extension handles a control on an accessory.
  */
@@ -88,6 +87,23 @@ public abstract class ControlExtension {
      */
     protected final BitmapFactory.Options mBitmapOptions;
 
+    /**
+     * Lossless PNG encoder used for layout images and image resources.
+     */
+    private final CompressedImageEncoder mPngEncoder = new CompressedImageEncoder();
+
+    /**
+     * Creates the encoder for hosts with their own raw display format, or
+     * null.
+     */
+    private static volatile ControlImageEncoder.Factory sHostImageEncoderFactory;
+
+    /**
+     * The strategy used to encode bitmaps shown with showBitmap, or null
+     * until it is selected for the host application.
+     */
+    private ControlImageEncoder mImageEncoder;
+
     /**
      * Create control extension.
      *
@@ -368,7 +384,9 @@ public abstract class ControlExtension {
     }
 
     /**
-     * Show an image on the accessory.
+     * Show an image on the accessory. The encoded image is kept in the
+     * shared {@link EncodedImageCache}, so showing it again does not encode
+     * it again.
      *
      * @param resourceId The image resource id.
      */
@@ -380,12 +398,17 @@ public abstract class ControlExtension {
         Intent intent = new Intent();
         intent.setAction(Control.Intents.CONTROL_DISPLAY_DATA_INTENT);
 
-        Bitmap bitmap = BitmapFactory.decodeResource(mContext.getResources(), resourceId,
-                mBitmapOptions);
-        ByteArrayOutputStream os = new ByteArrayOutputStream(256);
-        bitmap.compress(CompressFormat.PNG, 100, os);
-        byte[] buffer = os.toByteArray();
-        intent.putExtra(Control.Intents.EXTRA_DATA, buffer);
+        EncodedImageCache cache = EncodedImageCache.getInstance();
+        String variant = EncodedImageCache.getVariant(mContext.getResources(), mBitmapOptions);
+        EncodedImage image = cache.get(resourceId, EncodedImageCache.FORMAT_PNG, variant);
+        if (image == null) {
+            Bitmap bitmap = BitmapFactory.decodeResource(mContext.getResources(), resourceId,
+                    mBitmapOptions);
+            image = new EncodedImage(mPngEncoder.encode(bitmap).clone(), bitmap.getWidth(),
+                    bitmap.getHeight());
+            cache.put(resourceId, EncodedImageCache.FORMAT_PNG, variant, image);
+        }
+        intent.putExtra(Control.Intents.EXTRA_DATA, image.getData());
         sendToHostApp(intent);
     }
 
@@ -441,10 +464,7 @@ public abstract class ControlExtension {
 
         Intent intent = new Intent(Control.Intents.CONTROL_SEND_IMAGE_INTENT);
         intent.putExtra(Control.Intents.EXTRA_LAYOUT_REFERENCE, layoutReference);
-        ByteArrayOutputStream os = new ByteArrayOutputStream(256);
-        bitmap.compress(CompressFormat.PNG, 100, os);
-        byte[] buffer = os.toByteArray();
-        intent.putExtra(Control.Intents.EXTRA_DATA, buffer);
+        mPngEncoder.putImageData(intent, bitmap);
         sendToHostApp(intent);
     }
 
@@ -474,11 +494,8 @@ public abstract class ControlExtension {
             Dbg.d("showBitmap");
         }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
-        bitmap.compress(CompressFormat.PNG, 100, outputStream);
-
         Intent intent = new Intent(Control.Intents.CONTROL_DISPLAY_DATA_INTENT);
-        intent.putExtra(Control.Intents.EXTRA_DATA, outputStream.toByteArray());
+        getImageEncoder().putImageData(intent, bitmap);
         sendToHostApp(intent);
     }
 
@@ -494,16 +511,56 @@ public abstract class ControlExtension {
             Dbg.v("showBitmap x: " + x + " y: " + y);
         }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
-        bitmap.compress(CompressFormat.PNG, 100, outputStream);
-
         Intent intent = new Intent(Control.Intents.CONTROL_DISPLAY_DATA_INTENT);
         intent.putExtra(Control.Intents.EXTRA_X_OFFSET, x);
         intent.putExtra(Control.Intents.EXTRA_Y_OFFSET, y);
-        intent.putExtra(Control.Intents.EXTRA_DATA, outputStream.toByteArray());
+        getImageEncoder().putImageData(intent, bitmap);
         sendToHostApp(intent);
     }
 
+    /**
+     * Set the factory that creates the default encoder for host applications
+     * with their own raw display format. Accessory API libraries set it, so
+     * that controls on such hosts skip PNG compression without any setup.
+     *
+     * @param factory The factory, or null to always default to PNG.
+     */
+    public static void setHostImageEncoderFactory(final ControlImageEncoder.Factory factory) {
+        sHostImageEncoderFactory = factory;
+    }
+
+    /**
+     * Set the strategy used to encode bitmaps shown with
+     * {@link #showBitmap(Bitmap)} and {@link #showBitmap(Bitmap, int, int)}.
+     * By default the encoder is selected from the capabilities of the host
+     * application: its raw format when the host factory handles the host,
+     * otherwise lossless PNG. Use a {@link CompressedImageEncoder} with JPEG
+     * for content that changes every frame on other accessories.
+     *
+     * @param encoder The encoder, or null for the default.
+     */
+    protected void setImageEncoder(final ControlImageEncoder encoder) {
+        mImageEncoder = encoder;
+    }
+
+    /**
+     * Get the strategy used to encode bitmaps shown with showBitmap. The
+     * default is selected for the host application on first use.
+     *
+     * @return The encoder.
+     */
+    protected ControlImageEncoder getImageEncoder() {
+        if (mImageEncoder == null) {
+            ControlImageEncoder.Factory factory = sHostImageEncoderFactory;
+            ControlImageEncoder encoder = null;
+            if (factory != null) {
+                encoder = factory.create(mContext, mHostAppPackageName);
+            }
+            mImageEncoder = (encoder != null) ? encoder : mPngEncoder;
+        }
+        return mImageEncoder;
+    }
+
     /**
      * Set the accessory screens state.
      *
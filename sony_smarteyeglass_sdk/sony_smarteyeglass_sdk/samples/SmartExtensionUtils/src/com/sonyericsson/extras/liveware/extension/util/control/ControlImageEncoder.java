@@ -0,0 +1,72 @@
+/*
+Copyright (c) 2013 Sony Mobile Communications AB
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications AB nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonyericsson.extras.liveware.extension.util.control;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+
+/**
+ * The strategy used by {@link ControlExtension} to encode bitmaps that are
+ * shown on the accessory display.
+ *
+ * @see ControlExtension#setImageEncoder(ControlImageEncoder)
+ */
+public interface ControlImageEncoder {
+
+    /**
+     * Encodes a bitmap and puts the result, and any extras that describe its
+     * format, into a display data intent.
+     *
+     * @param intent The intent to send.
+     * @param bitmap The bitmap to encode.
+     */
+    void putImageData(Intent intent, Bitmap bitmap);
+
+    /**
+     * Creates the encoder that matches the display of a host application.
+     *
+     * @see ControlExtension#setHostImageEncoderFactory(Factory)
+     */
+    interface Factory {
+
+        /**
+         * Creates an encoder for a host application.
+         *
+         * @param context            The context.
+         * @param hostAppPackageName Package name of host application.
+         * @return The encoder, or null if the host has no display this
+         *         factory handles.
+         */
+        ControlImageEncoder create(Context context, String hostAppPackageName);
+    }
+}
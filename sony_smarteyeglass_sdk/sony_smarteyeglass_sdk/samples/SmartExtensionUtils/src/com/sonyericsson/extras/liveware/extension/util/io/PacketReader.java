@@ -0,0 +1,197 @@
+/*
+Copyright (c) 2013 Sony Mobile Communications AB
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications AB nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonyericsson.extras.liveware.extension.util.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.sonyericsson.extras.liveware.extension.util.Dbg;
+
+/**
+ * Reads length-prefixed packets, such as camera frames and sensor events,
+ * from a host application socket.
+ * <p>
+ * The stream is buffered, so the fields of a packet header do not each cost
+ * a system call, and payloads are read with {@link #readFully(byte[], int, int)},
+ * which either fills the whole range or throws {@link java.io.EOFException}.
+ * Sizes read from the stream are checked against a maximum with
+ * {@link #checkSize(int)}, so a corrupt header cannot cause a huge
+ * allocation. After a {@link MalformedPacketException}, call
+ * {@link #resync()} to drop the rest of the corrupt packet before reading
+ * the next one.
+ * </p>
+ */
+public class PacketReader {
+
+    /** The default buffer size in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    /** */
+    private final BufferedInputStream mBufferedStream;
+
+    /** */
+    private final DataInputStream mDataStream;
+
+    /** */
+    private final int mMaxSize;
+
+    /** */
+    private int mResyncCount;
+
+    /**
+     * Creates a reader with the default buffer size.
+     *
+     * @param in      The stream to read from.
+     * @param maxSize The largest size accepted by {@link #checkSize(int)}.
+     */
+    public PacketReader(final InputStream in, final int maxSize) {
+        this(in, DEFAULT_BUFFER_SIZE, maxSize);
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param in         The stream to read from.
+     * @param bufferSize The buffer size in bytes. Reads of at least this
+     *                   many bytes go directly into the caller's array.
+     * @param maxSize    The largest size accepted by {@link #checkSize(int)}.
+     */
+    public PacketReader(final InputStream in, final int bufferSize, final int maxSize) {
+        if (in == null) {
+            throw new IllegalArgumentException("in has illegal value");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize has illegal value");
+        }
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize has illegal value");
+        }
+        mBufferedStream = new BufferedInputStream(in, bufferSize);
+        mDataStream = new DataInputStream(mBufferedStream);
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Reads a big-endian 32-bit integer.
+     *
+     * @return The value.
+     * @throws IOException If the stream ends or fails.
+     */
+    public int readInt() throws IOException {
+        return mDataStream.readInt();
+    }
+
+    /**
+     * Reads a big-endian 64-bit integer.
+     *
+     * @return The value.
+     * @throws IOException If the stream ends or fails.
+     */
+    public long readLong() throws IOException {
+        return mDataStream.readLong();
+    }
+
+    /**
+     * Reads a big-endian 32-bit float.
+     *
+     * @return The value.
+     * @throws IOException If the stream ends or fails.
+     */
+    public float readFloat() throws IOException {
+        return mDataStream.readFloat();
+    }
+
+    /**
+     * Reads exactly the given number of bytes.
+     *
+     * @param buffer The array to read into.
+     * @param offset The offset in the array.
+     * @param length The number of bytes to read.
+     * @throws IOException If the stream ends before all bytes are read, or
+     *             fails.
+     */
+    public void readFully(final byte[] buffer, final int offset, final int length)
+            throws IOException {
+        mDataStream.readFully(buffer, offset, length);
+    }
+
+    /**
+     * Checks a size read from the stream.
+     *
+     * @param size The size.
+     * @return The size.
+     * @throws MalformedPacketException If the size is negative or larger
+     *             than the maximum.
+     */
+    public int checkSize(final long size) throws MalformedPacketException {
+        if (size < 0 || size > mMaxSize) {
+            throw new MalformedPacketException("Illegal packet size: " + size);
+        }
+        return (int) size;
+    }
+
+    /**
+     * Drops the bytes that have already arrived, to get past a corrupt
+     * packet. The host application writes each packet in one go, so the next
+     * byte to arrive is normally the start of a new packet.
+     *
+     * @return The number of bytes dropped.
+     * @throws IOException If the stream fails.
+     */
+    public long resync() throws IOException {
+        mResyncCount++;
+        long skipped = 0;
+        int available;
+        while ((available = mBufferedStream.available()) > 0) {
+            long n = mBufferedStream.skip(available);
+            if (n <= 0) {
+                break;
+            }
+            skipped += n;
+        }
+        if (Dbg.DEBUG) {
+            Dbg.w("PacketReader resync, skipped " + skipped + " bytes");
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of times {@link #resync()} was called.
+     *
+     * @return The resync count.
+     */
+    public int getResyncCount() {
+        return mResyncCount;
+    }
+}
@@ -43,8 +43,9 @@ import com.sonyericsson.extras.liveware.aef.registration.Registration;
 import com.sonyericsson.extras.liveware.aef.sensor.Sensor;
 import com.sonyericsson.extras.liveware.extension.util.Dbg;
 import com.sonyericsson.extras.liveware.extension.util.ExtensionUtils;
+import com.sonyericsson.extras.liveware.extension.util.io.MalformedPacketException;
+import com.sonyericsson.extras.liveware.extension.util.io.PacketReader;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 
 /**
@@ -52,6 +53,12 @@ import java.io.IOException;
  */
 public class AccessorySensor {
 
+    /** The buffer size for reading sensor data. */
+    private static final int SENSOR_BUFFER_SIZE = 1024;
+
+    /** The largest accepted size of the sensor values in one event. */
+    private static final int MAX_SENSOR_DATA_SIZE = 1024;
+
     private final Context mContext;
 
     private final String mHostAppPackageName;
@@ -361,10 +368,19 @@ public class AccessorySensor {
         @Override
         public void run() {
             try {
-                DataInputStream inStream = new DataInputStream(mLocalServerSocket.accept()
-                        .getInputStream());
+                PacketReader reader = new PacketReader(mLocalServerSocket.accept()
+                        .getInputStream(), SENSOR_BUFFER_SIZE, MAX_SENSOR_DATA_SIZE);
                 while (!isInterrupted()) {
-                    AccessorySensorEvent event = decodeSensorData(inStream);
+                    AccessorySensorEvent event;
+                    try {
+                        event = decodeSensorData(reader);
+                    } catch (MalformedPacketException e) {
+                        if (Dbg.DEBUG) {
+                            Dbg.w(e.getMessage(), e);
+                        }
+                        reader.resync();
+                        continue;
+                    }
                     if (event != null) {
                         Message msg = new Message();
                         msg.obj = event;
@@ -382,20 +398,21 @@ public class AccessorySensor {
     /**
      * Decodes data from the socket
      *
-     * @param inStream The data stream
+     * @param reader The packet reader
      * @return The sensor event.
      */
-    private AccessorySensorEvent decodeSensorData(DataInputStream inStream) throws IOException {
-        int totalLength = inStream.readInt();
+    private AccessorySensorEvent decodeSensorData(PacketReader reader) throws IOException {
+        int totalLength = reader.readInt();
         if (totalLength == 0) {
             return null;
         }
-        int accuracy = inStream.readInt();
-        long timestamp = inStream.readLong();
-        int sensorValueCount = inStream.readInt();
+        int accuracy = reader.readInt();
+        long timestamp = reader.readLong();
+        int sensorValueCount = reader.readInt();
+        reader.checkSize(sensorValueCount * 4L);
         float[] sensorValues = new float[sensorValueCount];
         for (int i = 0; i < sensorValueCount; i++) {
-            sensorValues[i] = inStream.readFloat();
+            sensorValues[i] = reader.readFloat();
         }
         return new AccessorySensorEvent(accuracy, timestamp, sensorValues);
     }
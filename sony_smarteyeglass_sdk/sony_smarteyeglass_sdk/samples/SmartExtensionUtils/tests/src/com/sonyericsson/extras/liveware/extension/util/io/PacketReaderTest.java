@@ -0,0 +1,241 @@
+/*
+Copyright (c) 2013 Sony Mobile Communications AB
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications AB nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonyericsson.extras.liveware.extension.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link PacketReader}, with packets made of a 32-bit length
+ * followed by the payload.
+ */
+public class PacketReaderTest extends TestCase {
+
+    /** */
+    private static final int MAX_SIZE = 1024;
+
+    /** Writes a packet with the given length field and payload. */
+    private static void writePacket(final DataOutputStream out, final int length,
+            final byte[] payload) throws IOException {
+        out.writeInt(length);
+        out.write(payload);
+    }
+
+    /** Returns the bytes of the given packets. */
+    private static byte[] packets(final byte[]... payloads) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (byte[] payload : payloads) {
+            writePacket(out, payload.length, payload);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Reads one packet. */
+    private static byte[] readPacket(final PacketReader reader) throws IOException {
+        int length = reader.checkSize(reader.readInt());
+        byte[] payload = new byte[length];
+        reader.readFully(payload, 0, length);
+        return payload;
+    }
+
+    /**
+     * Returns a stream that delivers each chunk separately, the way packets
+     * arrive on a socket: available() only covers the current chunk.
+     */
+    private static InputStream chunks(final byte[]... chunks) {
+        Vector<InputStream> streams = new Vector<InputStream>();
+        for (byte[] chunk : chunks) {
+            streams.add(new ByteArrayInputStream(chunk));
+        }
+        return new SequenceInputStream(streams.elements());
+    }
+
+    /** */
+    private static byte[] payload(final int length, final int seed) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (seed + i);
+        }
+        return payload;
+    }
+
+    public void testReadsPackets() throws IOException {
+        byte[] first = payload(10, 1);
+        byte[] second = payload(MAX_SIZE, 2);
+        PacketReader reader = new PacketReader(
+                new ByteArrayInputStream(packets(first, second)), 16, MAX_SIZE);
+        assertTrue(Arrays.equals(first, readPacket(reader)));
+        assertTrue(Arrays.equals(second, readPacket(reader)));
+    }
+
+    public void testReadsFields() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(-5);
+        out.writeLong(1234567890123L);
+        out.writeFloat(1.5f);
+        PacketReader reader = new PacketReader(
+                new ByteArrayInputStream(bytes.toByteArray()), MAX_SIZE);
+        assertEquals(-5, reader.readInt());
+        assertEquals(1234567890123L, reader.readLong());
+        assertEquals(1.5f, reader.readFloat());
+    }
+
+    public void testZeroLengthPackets() throws IOException {
+        byte[] last = payload(3, 9);
+        PacketReader reader = new PacketReader(
+                new ByteArrayInputStream(packets(new byte[0], new byte[0], last)), MAX_SIZE);
+        assertEquals(0, readPacket(reader).length);
+        assertEquals(0, readPacket(reader).length);
+        assertTrue(Arrays.equals(last, readPacket(reader)));
+    }
+
+    public void testTruncatedPayload() throws IOException {
+        byte[] data = packets(payload(100, 0));
+        PacketReader reader = new PacketReader(
+                new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1)), MAX_SIZE);
+        try {
+            readPacket(reader);
+            fail();
+        } catch (EOFException e) {
+            // Expected.
+        }
+    }
+
+    public void testTruncatedHeader() throws IOException {
+        PacketReader reader = new PacketReader(
+                new ByteArrayInputStream(new byte[] {0, 0}), MAX_SIZE);
+        try {
+            reader.readInt();
+            fail();
+        } catch (EOFException e) {
+            // Expected.
+        }
+    }
+
+    public void testOversizeLength() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writePacket(new DataOutputStream(bytes), MAX_SIZE + 1, new byte[0]);
+        PacketReader reader = new PacketReader(
+                new ByteArrayInputStream(bytes.toByteArray()), MAX_SIZE);
+        try {
+            readPacket(reader);
+            fail();
+        } catch (MalformedPacketException e) {
+            // Expected.
+        }
+    }
+
+    public void testCheckSizeLimits() throws IOException {
+        PacketReader reader = new PacketReader(new ByteArrayInputStream(new byte[0]), MAX_SIZE);
+        assertEquals(0, reader.checkSize(0));
+        assertEquals(MAX_SIZE, reader.checkSize(MAX_SIZE));
+        long[] illegal = {-1, Integer.MIN_VALUE, MAX_SIZE + 1L, Integer.MAX_VALUE + 1L};
+        for (long size : illegal) {
+            try {
+                reader.checkSize(size);
+                fail("size " + size);
+            } catch (MalformedPacketException e) {
+                // Expected.
+            }
+        }
+    }
+
+    public void testResyncDropsArrivedBytes() throws IOException {
+        byte[] data = packets(payload(20, 0), payload(20, 1));
+        PacketReader reader = new PacketReader(new ByteArrayInputStream(data), 8, MAX_SIZE);
+        reader.readInt();
+        assertEquals(data.length - 4, reader.resync());
+        assertEquals(1, reader.getResyncCount());
+        try {
+            reader.readInt();
+            fail();
+        } catch (EOFException e) {
+            // Expected.
+        }
+    }
+
+    public void testResyncAfterCorruptPacket() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // A packet whose length field is corrupt, and some of its payload.
+        writePacket(new DataOutputStream(bytes), -7, payload(30, 0));
+        byte[] next = payload(12, 5);
+        PacketReader reader = new PacketReader(
+                chunks(bytes.toByteArray(), packets(next)), 16, MAX_SIZE);
+        try {
+            readPacket(reader);
+            fail();
+        } catch (MalformedPacketException e) {
+            assertEquals(30, reader.resync());
+        }
+        assertTrue(Arrays.equals(next, readPacket(reader)));
+        assertEquals(1, reader.getResyncCount());
+    }
+
+    public void testResyncWithNothingArrived() throws IOException {
+        PacketReader reader = new PacketReader(new ByteArrayInputStream(new byte[0]), MAX_SIZE);
+        assertEquals(0, reader.resync());
+        assertEquals(1, reader.getResyncCount());
+    }
+
+    public void testIllegalArguments() {
+        try {
+            new PacketReader(null, MAX_SIZE);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            new PacketReader(new ByteArrayInputStream(new byte[0]), 0, MAX_SIZE);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            new PacketReader(new ByteArrayInputStream(new byte[0]), -1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
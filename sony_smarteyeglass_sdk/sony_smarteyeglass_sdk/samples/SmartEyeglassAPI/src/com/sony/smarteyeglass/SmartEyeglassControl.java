@@ -72,6 +72,22 @@ public class SmartEyeglassControl {
          */
         static final String CONTROL_API_VERSION_CONFIRM_INTENT = "com.sony.smarteyeglass.control.API_VERSION_CONFIRM";
 
+        /**
+         * Sent from HostApp to app in reply to {@link #CONTROL_API_VERSION_CONFIRM_INTENT}
+         * with the highest SmartEyeglass API version that HostApp supports.
+         * HostApps older than version 4 do not send this intent, so an app that
+         * receives no reply must assume that only version 3 features are available.
+         * <p>
+         * Intent-extra data:
+         * </p>
+         * <ul>
+         *   <li>{@link #EXTRA_VERSION_DATA}</li>
+         * </ul>
+         *
+         * @since 4
+         */
+        static final String CONTROL_API_VERSION_NOTIFY_INTENT = "com.sony.smarteyeglass.control.API_VERSION_NOTIFY";
+
         /**
          * Sent from app to HostApp to show a text view on the accessory.
          * <p>
@@ -471,6 +487,69 @@ public class SmartEyeglassControl {
          */
         static final String CONTROL_AR_DELETE_OBJECT_INTENT = "com.sony.smarteyeglass.control.AR_DELETE_OBJECT";
 
+        /**
+         * Sent from app to HostApp to register several rendering objects at once.
+         * Each entry of {@link #EXTRA_AR_OBJECT_LIST} holds the extras of one
+         * {@link #CONTROL_AR_REGISTER_OBJECT_REQUEST_INTENT}, and the result of each
+         * registration is sent in a {@link #CONTROL_AR_REGISTER_OBJECT_RESPONSE_INTENT}.
+         * <p>
+         * Intent-extra data:
+         * </p>
+         * <ul>
+         *   <li>{@link com.sonyericsson.extras.liveware.aef.control.Control.Intents#EXTRA_AEA_PACKAGE_NAME}</li>
+         *   <li>{@link #EXTRA_AR_OBJECT_LIST}</li>
+         * </ul>
+         *
+         * @since 4
+         */
+        static final String CONTROL_AR_REGISTER_OBJECTS_REQUEST_INTENT = "com.sony.smarteyeglass.control.AR_REGISTER_OBJECTS_REQUEST";
+
+        /**
+         * Sent from app to HostApp to change the position of several objects at once.
+         * Each entry of {@link #EXTRA_AR_OBJECT_LIST} holds the extras of one
+         * {@link #CONTROL_AR_MOVE_OBJECT_INTENT}.
+         * <p>
+         * Intent-extra data:
+         * </p>
+         * <ul>
+         *   <li>{@link com.sonyericsson.extras.liveware.aef.control.Control.Intents#EXTRA_AEA_PACKAGE_NAME}</li>
+         *   <li>{@link #EXTRA_AR_OBJECT_LIST}</li>
+         * </ul>
+         *
+         * @since 4
+         */
+        static final String CONTROL_AR_MOVE_OBJECTS_INTENT = "com.sony.smarteyeglass.control.AR_MOVE_OBJECTS";
+
+        /**
+         * Sent from app to HostApp to change the rendering order of several objects at once.
+         * Each entry of {@link #EXTRA_AR_OBJECT_LIST} holds the extras of one
+         * {@link #CONTROL_AR_CHANGE_OBJECT_ORDER_INTENT}.
+         * <p>
+         * Intent-extra data:
+         * </p>
+         * <ul>
+         *   <li>{@link com.sonyericsson.extras.liveware.aef.control.Control.Intents#EXTRA_AEA_PACKAGE_NAME}</li>
+         *   <li>{@link #EXTRA_AR_OBJECT_LIST}</li>
+         * </ul>
+         *
+         * @since 4
+         */
+        static final String CONTROL_AR_CHANGE_OBJECTS_ORDER_INTENT = "com.sony.smarteyeglass.control.AR_CHANGE_OBJECTS_ORDER";
+
+        /**
+         * Sent from app to HostApp to delete several rendering objects at once.
+         * <p>
+         * Intent-extra data:
+         * </p>
+         * <ul>
+         *   <li>{@link com.sonyericsson.extras.liveware.aef.control.Control.Intents#EXTRA_AEA_PACKAGE_NAME}</li>
+         *   <li>{@link #EXTRA_AR_OBJECT_IDS}</li>
+         * </ul>
+         *
+         * @since 4
+         */
+        static final String CONTROL_AR_DELETE_OBJECTS_INTENT = "com.sony.smarteyeglass.control.AR_DELETE_OBJECTS";
+
         /**
          * Sent by HostApp when the display is turned on or off, either manually by the user or automatically.
          * <p>
@@ -652,6 +731,7 @@ public class SmartEyeglassControl {
          * <ul>
          *   <li>0: &#39;The data is in standard image format(8bit bitmap format)&#39; This is the default. </li>
          *   <li>1: &#39;The data is in raw image format which can be sent directly to the accessory(8bit data sequences for every pixels)&#39;</li>
+         *   <li>{@link #DATA_RAW_FORMAT_RUN_LENGTH}: &#39;The data is in raw image format, run-length encoded&#39;. Since API version 4.</li>
          * </ul>
          * </p>
          *
@@ -1290,6 +1370,17 @@ public class SmartEyeglassControl {
          */
         static final int DISPLAY_DATA_TYPE_SHOW_IMAGE = 1;
 
+        /**
+         * Raw data format for {@link #EXTRA_DATA_IS_RAW_FORMAT}: the raw
+         * 8-bit pixels, reduced to fewer gray levels and run-length encoded
+         * with PackBits. See
+         * {@link com.sony.smarteyeglass.extension.util.RunLengthImageCodec}
+         * for the encoding.
+         *
+         * @since 4
+         */
+        static final int DATA_RAW_FORMAT_RUN_LENGTH = 2;
+
         /**
          * This value is returned result of voice-to-text input operation.
          * Status constant indicates successful voice-to-text input operation.
@@ -1358,6 +1449,25 @@ public class SmartEyeglassControl {
          */
         static final String EXTRA_AR_OBJECT_ID = "ar_object_id";
 
+        /**
+         * Intent-extra, the objects of a batch AR operation. Each entry holds
+         * the extras of the single-object intent for one object.
+         * <p>
+         * TYPE: ArrayList of Bundle
+         * </p>
+         * @since 4
+         */
+        static final String EXTRA_AR_OBJECT_LIST = "ar_object_list";
+
+        /**
+         * Intent-extra, the object IDs of a batch AR operation.
+         * <p>
+         * TYPE: ARRAY OF INTEGER (int[])
+         * </p>
+         * @since 4
+         */
+        static final String EXTRA_AR_OBJECT_IDS = "ar_object_ids";
+
         /**
          * Intent-extra, the coordinate system type, one of:
          * <ul>
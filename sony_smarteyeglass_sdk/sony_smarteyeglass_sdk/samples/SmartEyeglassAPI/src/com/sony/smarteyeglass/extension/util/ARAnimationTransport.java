@@ -0,0 +1,314 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+
+import com.sony.smarteyeglass.SmartEyeglassControl;
+
+/**
+ * Writes AR animation frames to the host application on a dedicated thread.
+ * <p>
+ * Frames are put in a bounded outbox and written through one long-lived
+ * buffered stream, so a slow host does not block the thread that sends the
+ * frames. The outbox holds at most one frame per object: a newer frame for
+ * an object replaces its older unsent frame. When the outbox is full, the
+ * oldest frame is given up. Replaced and given up frames are counted as
+ * dropped, and those sent with a transaction number are reported to the
+ * {@link DropListener}, so that the app still gets a result for them.
+ * </p>
+ */
+final class ARAnimationTransport {
+
+    /** The default number of frames the outbox holds. */
+    static final int DEFAULT_CAPACITY = 8;
+
+    /** The size of the stream buffer, enough for a typical frame. */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /** */
+    private final LocalSocket mSocket;
+
+    /** */
+    private final DataOutputStream mOutputStream;
+
+    /** */
+    private final int mCapacity;
+
+    /** */
+    private final DropListener mDropListener;
+
+    /** Unsent frames by object id, oldest first. Guarded by itself. */
+    private final LinkedHashMap<Integer, Frame> mOutbox = new LinkedHashMap<Integer, Frame>();
+
+    /** */
+    private final Thread mWriter;
+
+    /** Guarded by {@link #mOutbox}. */
+    private boolean mClosed;
+
+    /** Guarded by {@link #mOutbox}. */
+    private int mSentCount;
+
+    /** Guarded by {@link #mOutbox}. */
+    private int mDroppedCount;
+
+    /**
+     * Told about frames with a transaction number that were dropped before
+     * they were written, so that a failure result can be reported for them.
+     */
+    interface DropListener {
+
+        /**
+         * Called on the thread that dropped the frame, without holding a
+         * lock.
+         *
+         * @param transactionNumber The transaction number of the frame.
+         */
+        void onFrameDropped(int transactionNumber);
+    }
+
+    /**
+     * A frame waiting in the outbox.
+     */
+    private static final class Frame {
+
+        /** */
+        final int mObjectId;
+
+        /** */
+        final int mTransactionNumber;
+
+        /** */
+        final byte[] mData;
+
+        /** */
+        Frame(final int objectId, final int transactionNumber, final byte[] data) {
+            mObjectId = objectId;
+            mTransactionNumber = transactionNumber;
+            mData = data;
+        }
+    }
+
+    /**
+     * Connects to the animation socket of the host application and starts
+     * the writer thread.
+     *
+     * @param socketAddress The socket name sent by the host application.
+     * @param capacity      The number of frames the outbox holds.
+     * @param dropListener  Told about dropped frames with a transaction
+     *                      number.
+     * @throws IOException if the socket could not be connected.
+     */
+    ARAnimationTransport(final String socketAddress, final int capacity,
+            final DropListener dropListener) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity has illegal value");
+        }
+        if (dropListener == null) {
+            throw new IllegalArgumentException("dropListener has illegal value");
+        }
+        mCapacity = capacity;
+        mDropListener = dropListener;
+        mSocket = new LocalSocket();
+        try {
+            mSocket.connect(new LocalSocketAddress(socketAddress));
+            mOutputStream = new DataOutputStream(
+                    new BufferedOutputStream(mSocket.getOutputStream(), BUFFER_SIZE));
+        } catch (IOException e) {
+            mSocket.close();
+            throw e;
+        }
+        mWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeFrames();
+            }
+        }, "ARAnimationWriter");
+        mWriter.setDaemon(true);
+        mWriter.start();
+    }
+
+    /**
+     * Puts a frame in the outbox, replacing any unsent frame of the same
+     * object.
+     *
+     * @param objectId          The object ID.
+     * @param transactionNumber The transaction number.
+     * @param data              The PNG data. It must not be modified.
+     */
+    void send(final int objectId, final int transactionNumber, final byte[] data) {
+        Frame dropped;
+        synchronized (mOutbox) {
+            if (mClosed) {
+                dropped = new Frame(objectId, transactionNumber, data);
+            } else {
+                Integer key = Integer.valueOf(objectId);
+                dropped = mOutbox.remove(key);
+                if (dropped == null && mOutbox.size() >= mCapacity) {
+                    Iterator<Frame> it = mOutbox.values().iterator();
+                    dropped = it.next();
+                    it.remove();
+                }
+                if (dropped != null) {
+                    mDroppedCount++;
+                }
+                mOutbox.put(key, new Frame(objectId, transactionNumber, data));
+                mOutbox.notify();
+            }
+        }
+        if (dropped != null) {
+            reportDropped(dropped);
+        }
+    }
+
+    /**
+     * Stops the writer thread, drops the unsent frames and closes the
+     * socket.
+     */
+    void close() {
+        List<Frame> dropped;
+        synchronized (mOutbox) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mDroppedCount += mOutbox.size();
+            dropped = new ArrayList<Frame>(mOutbox.values());
+            mOutbox.clear();
+            mOutbox.notify();
+        }
+        for (Frame frame : dropped) {
+            reportDropped(frame);
+        }
+        try {
+            mSocket.close();
+        } catch (IOException e) {
+            if (Dbg.DEBUG) {
+                Dbg.e("Failed closing socket for AR Animation data.");
+            }
+        }
+    }
+
+    /**
+     * @return The number of frames written and flushed to the socket.
+     */
+    int getSentCount() {
+        synchronized (mOutbox) {
+            return mSentCount;
+        }
+    }
+
+    /**
+     * @return The number of frames replaced or given up before they were
+     *         written.
+     */
+    int getDroppedCount() {
+        synchronized (mOutbox) {
+            return mDroppedCount;
+        }
+    }
+
+    /** Reports a dropped frame if the app asked for its result. */
+    private void reportDropped(final Frame frame) {
+        if (frame.mTransactionNumber
+                != SmartEyeglassControl.Intents.INVALID_DISPLAY_DATA_TRANSACTION_NUMBER) {
+            mDropListener.onFrameDropped(frame.mTransactionNumber);
+        }
+    }
+
+    /** Runs on the writer thread until the transport is closed. */
+    private void writeFrames() {
+        // The frames written since the last flush, which may not have
+        // reached the host yet
+        List<Frame> inFlight = new ArrayList<Frame>();
+        try {
+            while (true) {
+                Frame frame;
+                boolean more;
+                synchronized (mOutbox) {
+                    while (!mClosed && mOutbox.isEmpty()) {
+                        mOutbox.wait();
+                    }
+                    if (mClosed) {
+                        break;
+                    }
+                    Iterator<Frame> it = mOutbox.values().iterator();
+                    frame = it.next();
+                    it.remove();
+                    more = !mOutbox.isEmpty();
+                }
+                inFlight.add(frame);
+                mOutputStream.writeInt(frame.mObjectId);
+                mOutputStream.writeInt(frame.mTransactionNumber);
+                mOutputStream.writeInt(frame.mData.length);
+                mOutputStream.write(frame.mData);
+                // Write frames queued back to back in one go
+                if (!more) {
+                    mOutputStream.flush();
+                    synchronized (mOutbox) {
+                        mSentCount += inFlight.size();
+                    }
+                    inFlight.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            boolean closed;
+            synchronized (mOutbox) {
+                closed = mClosed;
+            }
+            if (!closed && Dbg.DEBUG) {
+                Dbg.e(e.getMessage(), e);
+            }
+        }
+        // The frames being written when the host went or the transport was
+        // closed are dropped, along with the later ones
+        synchronized (mOutbox) {
+            mDroppedCount += inFlight.size();
+        }
+        for (Frame frame : inFlight) {
+            reportDropped(frame);
+        }
+        close();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+/**
+ * A size-bounded cache of AR animation frames that are already compressed
+ * to PNG, keyed by bitmap identity.
+ * <p>
+ * An animation that loops over a fixed set of bitmaps then compresses each
+ * frame once. A cached frame is only used while the bitmap keeps the
+ * generation id it had when it was compressed, so a bitmap that is drawn
+ * into again is compressed again. The cache holds on to the bitmaps, so each
+ * frame counts with the size of its bitmap as well as its compressed data,
+ * and the least recently used frames are evicted when the total exceeds the
+ * limit. Clear it when the frames are no longer used.
+ * </p>
+ */
+final class ARFrameCache {
+
+    /** The default size limit, in bytes. */
+    static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    /** */
+    private final LinkedHashMap<Bitmap, Frame> mFrames =
+            new LinkedHashMap<Bitmap, Frame>(16, 0.75f, true);
+
+    /** */
+    private final int mQuality;
+
+    /** */
+    private int mMaxSize;
+
+    /** */
+    private int mSize;
+
+    /** */
+    private int mHitCount;
+
+    /** */
+    private int mMissCount;
+
+    /**
+     * Compressed data together with the generation id it was made from.
+     */
+    private static final class Frame {
+
+        /** */
+        final int mGenerationId;
+
+        /** */
+        final byte[] mData;
+
+        /** The bytes held by this frame, its bitmap included. */
+        final int mSize;
+
+        /** */
+        Frame(final int generationId, final byte[] data, final int bitmapSize) {
+            mGenerationId = generationId;
+            mData = data;
+            mSize = data.length + bitmapSize;
+        }
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize The size limit, in bytes of bitmaps and compressed data.
+     *                0 disables caching.
+     * @param quality The PNG compression quality.
+     */
+    ARFrameCache(final int maxSize, final int quality) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize has illegal value");
+        }
+        mMaxSize = maxSize;
+        mQuality = quality;
+    }
+
+    /**
+     * Returns the PNG data of a bitmap, compressing it only if it is not
+     * cached or has changed since it was cached.
+     *
+     * @param bitmap The bitmap.
+     * @return The PNG data. The array is shared and must not be modified.
+     */
+    synchronized byte[] encode(final Bitmap bitmap) {
+        int generationId = bitmap.getGenerationId();
+        Frame frame = mFrames.get(bitmap);
+        if (frame != null && frame.mGenerationId == generationId) {
+            mHitCount++;
+            return frame.mData;
+        }
+        mMissCount++;
+        if (frame != null) {
+            mFrames.remove(bitmap);
+            mSize -= frame.mSize;
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, mQuality, stream);
+        byte[] data = stream.toByteArray();
+        frame = new Frame(generationId, data, bitmap.getByteCount());
+        if (frame.mSize <= mMaxSize) {
+            mFrames.put(bitmap, frame);
+            mSize += frame.mSize;
+            trimToSize(mMaxSize);
+        }
+        return data;
+    }
+
+    /**
+     * Changes the size limit, evicting frames if needed.
+     *
+     * @param maxSize The size limit, in bytes of bitmaps and compressed data.
+     *                0 disables caching.
+     */
+    synchronized void setMaxSize(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize has illegal value");
+        }
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * @return The number of sends that used cached data.
+     */
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return The number of sends that compressed the bitmap.
+     */
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Removes all frames.
+     */
+    synchronized void clear() {
+        mFrames.clear();
+        mSize = 0;
+    }
+
+    /** */
+    private void trimToSize(final int maxSize) {
+        Iterator<Map.Entry<Bitmap, Frame>> it = mFrames.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Bitmap, Frame> entry = it.next();
+            if (mSize <= maxSize && !entry.getKey().isRecycled()) {
+                continue;
+            }
+            mSize -= entry.getValue().mSize;
+            it.remove();
+        }
+    }
+}
@@ -31,8 +31,26 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.sony.smarteyeglass.extension.util;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * The camera event class passes data captured by the camera.
+ * <p>
+ * When a camera buffer mode other than
+ * {@link SmartEyeglassControlUtils#CAMERA_BUFFER_MODE_NONE} is set, the
+ * picture data is held in a pooled buffer that can be longer than the
+ * picture. Use {@link #getDataLength()} and {@link #getDataBuffer()} to
+ * access it without a copy, and do not use the data after
+ * {@link #release()}. {@link #getData()} then returns a copy.
+ * </p><p>
+ * A pooled event is reference counted, so that one buffer can be shared by
+ * several consumers, see
+ * {@link SmartEyeglassControlUtils#subscribeCamera(CameraEventConsumer, int)}.
+ * Every holder of a reference calls {@link #release()} once; a holder that
+ * passes the event on calls {@link #retain()} for the new holder first.
+ * </p>
+ * @see SmartEyeglassControlUtils#setCameraBufferMode(int)
  */
 public class CameraEvent {
     private final int mIndex;
@@ -43,8 +61,22 @@ public class CameraEvent {
 
     private final byte[] mData;
 
+    private final int mLength;
+
     private final int mErrorStatus;
 
+    /** The pool the data buffer goes back to, or null. */
+    private final CameraFramePool mPool;
+
+    /** The number of holders of a pooled event. */
+    private int mRefCount = 1;
+
+    /** True once the pooled data buffer has been handed back. */
+    private boolean mReleased;
+
+    /** Time the event was read from the socket, from {@link System#nanoTime()}. */
+    private long mArrivalTime;
+
     /**
      * Creates an event object for camera operation.
      * @param index     identifies the type of data being passed, 0 for picture.
@@ -57,7 +89,29 @@ public class CameraEvent {
         this.mFrameId = frameId;
         this.mTimestamp = timeStamp;
         this.mData = mData;
+        this.mLength = (mData != null) ? mData.length : 0;
+        this.mErrorStatus = 0;
+        this.mPool = null;
+    }
+
+    /**
+     * Creates an event object for picture data held in a pooled buffer.
+     * @param index     identifies the type of data being passed, 0 for picture.
+     * @param frameId   value used to identify the order of the captured data.
+     * @param timeStamp milliseconds since the epoch (1970-01-01).
+     * @param data      buffer holding the picture data from offset 0.
+     * @param length    length of the picture data.
+     * @param pool      the pool to hand the buffer back to on release.
+     */
+    CameraEvent(final int index, final int frameId, final long timeStamp,
+            final byte[] data, final int length, final CameraFramePool pool) {
+        this.mIndex = index;
+        this.mFrameId = frameId;
+        this.mTimestamp = timeStamp;
+        this.mData = data;
+        this.mLength = length;
         this.mErrorStatus = 0;
+        this.mPool = pool;
     }
 
     /**
@@ -72,7 +126,9 @@ public class CameraEvent {
         this.mFrameId = frameId;
         this.mTimestamp = timeStamp;
         this.mData = null;
+        this.mLength = 0;
         this.mErrorStatus = status;
+        this.mPool = null;
     }
 
     /**
@@ -101,12 +157,92 @@ public class CameraEvent {
     }
 
     /**
-     * Retrieves the picture data.
+     * Retrieves the picture data. With a camera buffer mode set, the data is
+     * copied out of the pooled buffer on every call, so use
+     * {@link #getDataBuffer()} to read it without a copy.
      *
-     * @return The picture data, or NULL on error.
+     * @return The picture data, exactly {@link #getDataLength()} bytes long,
+     *         or NULL on error.
+     * @throws IllegalStateException if the event has been released.
      */
     public byte[] getData() {
-        return mData;
+        checkNotReleased();
+        if (mPool == null || mData == null) {
+            return mData;
+        }
+        return Arrays.copyOf(mData, mLength);
+    }
+
+    /**
+     * Retrieves the length of the picture data.
+     *
+     * @return The number of bytes of picture data, 0 on error.
+     */
+    public int getDataLength() {
+        return mLength;
+    }
+
+    /**
+     * Retrieves the picture data as a buffer limited to the picture length,
+     * without copying it.
+     *
+     * @return The picture data, or NULL on error.
+     * @throws IllegalStateException if the event has been released.
+     */
+    public ByteBuffer getDataBuffer() {
+        checkNotReleased();
+        if (mData == null) {
+            return null;
+        }
+        return ByteBuffer.wrap(mData, 0, mLength);
+    }
+
+    /**
+     * Adds a holder of the picture data. The data stays valid until every
+     * holder has called {@link #release()}. Has no effect on an event that
+     * was not pooled.
+     *
+     * @throws IllegalStateException if the event has been released.
+     */
+    public synchronized void retain() {
+        checkNotReleased();
+        mRefCount++;
+    }
+
+    /**
+     * Gives up a hold on the picture data. When the last holder releases the
+     * event, the buffer goes back to the pool it came from, and the picture
+     * data must not be used anymore. Releasing an event that has already
+     * gone back to the pool, or that was not pooled, has no effect.
+     */
+    public void release() {
+        synchronized (this) {
+            if (mPool == null || mReleased) {
+                return;
+            }
+            if (--mRefCount > 0) {
+                return;
+            }
+            mReleased = true;
+        }
+        mPool.release(mData);
+    }
+
+    /** */
+    void setArrivalTime(final long arrivalTime) {
+        mArrivalTime = arrivalTime;
+    }
+
+    /** */
+    long getArrivalTime() {
+        return mArrivalTime;
+    }
+
+    /** */
+    private synchronized void checkNotReleased() {
+        if (mReleased) {
+            throw new IllegalStateException("CameraEvent has been released");
+        }
     }
 
     /**
@@ -122,7 +258,7 @@ public class CameraEvent {
     public String toString() {
         if (mData != null) {
             return String.format("CameraEvent: Index:%d, frame:%d, timestamp:%d, datalength:%d",
-                    mIndex, mFrameId, mTimestamp, mData.length);
+                    mIndex, mFrameId, mTimestamp, mLength);
         }
         return String.format("CameraEvent: Index:%d, frame:%d, timestamp:%d, data is null",
                 mIndex, mFrameId, mTimestamp);
@@ -0,0 +1,51 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+/**
+ * Receives camera frames through a subscription, in addition to
+ * {@link SmartEyeglassEventListener#onCameraReceived(CameraEvent)}.
+ *
+ * @see SmartEyeglassControlUtils#subscribeCamera(CameraEventConsumer, int)
+ */
+public interface CameraEventConsumer {
+
+    /**
+     * Called on the subscription's looper thread for each delivered frame.
+     * In {@link SmartEyeglassControlUtils#CAMERA_BUFFER_MODE_EXPLICIT_RELEASE},
+     * call {@link CameraEvent#release()} when done with the frame.
+     *
+     * @param event The camera event, shared with the other consumers. Do not
+     *              change its data.
+     */
+    void onCameraReceived(CameraEvent event);
+}
@@ -0,0 +1,211 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.ArrayDeque;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+/**
+ * Hands camera events from the socket thread to the thread that created
+ * the dispatcher.
+ * <p>
+ * Events wait in a queue of limited capacity. When the queue is full, the
+ * oldest event is dropped and its buffer released. At most one message is
+ * pending in the looper at any time, and each message delivers one event,
+ * so a slow receiver does not make the looper queue grow.
+ * </p>
+ */
+final class CameraEventDispatcher implements Handler.Callback {
+
+    /** Receives the delivered events. */
+    interface Receiver {
+
+        /**
+         * Called on the dispatcher thread for each delivered event.
+         *
+         * @param event The camera event.
+         */
+        void onCameraReceived(CameraEvent event);
+    }
+
+    /** */
+    private static final int MSG_DELIVER = 1;
+
+    /** */
+    private final Handler mHandler;
+
+    /** */
+    private final Receiver mReceiver;
+
+    /** The waiting events, oldest first. Guarded by itself. */
+    private final ArrayDeque<CameraEvent> mQueue = new ArrayDeque<CameraEvent>();
+
+    /** The queue capacity, 0 for no limit. */
+    private int mCapacity;
+
+    /** True if a delivery message is pending. */
+    private boolean mScheduled;
+
+    /** */
+    private int mDeliveredCount;
+
+    /** */
+    private int mDroppedCount;
+
+    /**
+     * Creates a dispatcher delivering on the current thread.
+     *
+     * @param receiver The receiver of the events.
+     * @param capacity The queue capacity, 0 for no limit.
+     */
+    CameraEventDispatcher(final Receiver receiver, final int capacity) {
+        this(Looper.myLooper(), receiver, capacity);
+    }
+
+    /**
+     * Creates a dispatcher delivering on the thread of the given looper.
+     *
+     * @param looper   The looper of the delivering thread.
+     * @param receiver The receiver of the events.
+     * @param capacity The queue capacity, 0 for no limit.
+     */
+    CameraEventDispatcher(final Looper looper, final Receiver receiver, final int capacity) {
+        mHandler = new Handler(looper, this);
+        mReceiver = receiver;
+        mCapacity = capacity;
+    }
+
+    /**
+     * Sets the queue capacity. Events beyond the new capacity are dropped.
+     *
+     * @param capacity The queue capacity, 0 for no limit.
+     */
+    void setCapacity(final int capacity) {
+        synchronized (mQueue) {
+            mCapacity = capacity;
+            trim();
+        }
+    }
+
+    /**
+     * Queues an event for delivery. Can be called from any thread.
+     *
+     * @param event The camera event.
+     */
+    void offer(final CameraEvent event) {
+        synchronized (mQueue) {
+            mQueue.addLast(event);
+            trim();
+            if (!mScheduled) {
+                mScheduled = true;
+                mHandler.sendMessage(Message.obtain(mHandler, MSG_DELIVER));
+            }
+        }
+    }
+
+    /**
+     * Drops all waiting events.
+     */
+    void clear() {
+        synchronized (mQueue) {
+            while (!mQueue.isEmpty()) {
+                mQueue.removeFirst().release();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of events delivered to the receiver.
+     *
+     * @return The delivered event count.
+     */
+    int getDeliveredCount() {
+        synchronized (mQueue) {
+            return mDeliveredCount;
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because the queue was full.
+     *
+     * @return The dropped event count.
+     */
+    int getDroppedCount() {
+        synchronized (mQueue) {
+            return mDroppedCount;
+        }
+    }
+
+    /**
+     * Sets the event counts back to 0.
+     */
+    void resetStatistics() {
+        synchronized (mQueue) {
+            mDeliveredCount = 0;
+            mDroppedCount = 0;
+        }
+    }
+
+    @Override
+    public boolean handleMessage(final Message msg) {
+        if (msg.what != MSG_DELIVER) {
+            return false;
+        }
+        CameraEvent event;
+        synchronized (mQueue) {
+            event = mQueue.pollFirst();
+            if (event == null) {
+                mScheduled = false;
+                return true;
+            }
+            mDeliveredCount++;
+            if (mQueue.isEmpty()) {
+                mScheduled = false;
+            } else {
+                mHandler.sendMessage(Message.obtain(mHandler, MSG_DELIVER));
+            }
+        }
+        mReceiver.onCameraReceived(event);
+        return true;
+    }
+
+    /** Drops the oldest events beyond the capacity. Called with the lock held. */
+    private void trim() {
+        while (mCapacity > 0 && mQueue.size() > mCapacity) {
+            mQueue.removeFirst().release();
+            mDroppedCount++;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps byte arrays for received camera frames so they can be used again
+ * instead of allocating a new array for every frame.
+ * <p>
+ * Buffers are allocated in whole allocation units, so that frames of
+ * slightly different sizes, as produced by JPEG streaming, fit in the same
+ * buffer. A buffer can therefore be longer than the frame it holds. At most
+ * the given number of free buffers are kept; the smallest ones are dropped
+ * first.
+ * </p><p>
+ * This class is thread safe. Buffers are taken on the camera socket thread
+ * and handed back on whatever thread releases the {@link CameraEvent}.
+ * </p>
+ */
+public final class CameraFramePool {
+
+    /** The default maximum number of free buffers kept. */
+    public static final int DEFAULT_MAX_BUFFERS = 4;
+
+    /** Buffer sizes are rounded up to a multiple of this. */
+    private static final int ALLOCATION_UNIT = 16 * 1024;
+
+    /** */
+    private final int mMaxBuffers;
+
+    /** The free buffers. */
+    private final ArrayList<byte[]> mFree = new ArrayList<byte[]>();
+
+    /** */
+    private int mAllocatedCount;
+
+    /** */
+    private int mReusedCount;
+
+    /**
+     * Creates a pool keeping up to {@link #DEFAULT_MAX_BUFFERS} free buffers.
+     */
+    public CameraFramePool() {
+        this(DEFAULT_MAX_BUFFERS);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxBuffers The maximum number of free buffers kept.
+     */
+    public CameraFramePool(final int maxBuffers) {
+        if (maxBuffers < 1) {
+            throw new IllegalArgumentException("maxBuffers has illegal value");
+        }
+        mMaxBuffers = maxBuffers;
+    }
+
+    /**
+     * Takes a free buffer of at least the given length, or allocates a new
+     * one if there is none.
+     *
+     * @param length The minimum length in bytes.
+     * @return The buffer.
+     */
+    public synchronized byte[] acquire(final int length) {
+        int best = -1;
+        for (int i = 0; i < mFree.size(); i++) {
+            int size = mFree.get(i).length;
+            if (size >= length && (best < 0 || size < mFree.get(best).length)) {
+                best = i;
+            }
+        }
+        if (best >= 0) {
+            mReusedCount++;
+            return mFree.remove(best);
+        }
+        mAllocatedCount++;
+        int size = (length + ALLOCATION_UNIT - 1) / ALLOCATION_UNIT * ALLOCATION_UNIT;
+        return new byte[size];
+    }
+
+    /**
+     * Hands a buffer back to the pool. The caller must not use it anymore.
+     *
+     * @param buffer The buffer from {@link #acquire(int)}.
+     */
+    public synchronized void release(final byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (mFree.size() < mMaxBuffers) {
+            mFree.add(buffer);
+            return;
+        }
+        int smallest = 0;
+        for (int i = 1; i < mFree.size(); i++) {
+            if (mFree.get(i).length < mFree.get(smallest).length) {
+                smallest = i;
+            }
+        }
+        if (mFree.get(smallest).length < buffer.length) {
+            mFree.set(smallest, buffer);
+        }
+    }
+
+    /**
+     * Drops all free buffers.
+     */
+    public synchronized void clear() {
+        mFree.clear();
+    }
+
+    /**
+     * Returns the number of buffers allocated by this pool.
+     *
+     * @return The allocation count.
+     */
+    public synchronized int getAllocatedCount() {
+        return mAllocatedCount;
+    }
+
+    /**
+     * Returns the number of times a free buffer was used again.
+     *
+     * @return The reuse count.
+     */
+    public synchronized int getReusedCount() {
+        return mReusedCount;
+    }
+}
@@ -0,0 +1,434 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import android.os.Handler;
+
+/**
+ * Runs camera frames through a chain of processing stages off the main
+ * thread.
+ * <p>
+ * Each stage, such as JPEG decoding, scaling, analysis or sending to the
+ * display, runs on its own worker thread. Stages are connected by bounded
+ * queues. When a queue is full, its oldest frame is dropped so that the
+ * newest frames get through, which keeps latency low for live processing.
+ * The output of the last stage is delivered to the {@link ResultListener}
+ * on the thread that created the processor; if the listener falls behind,
+ * only the newest result is kept.
+ * </p><p>
+ * A stage owns its input: it must release or recycle it if needed. Dropped
+ * {@link CameraEvent} inputs are released by the processor. The time spent
+ * in each stage is measured, see {@link #getAverageStageTime(int)}.
+ * </p><p>
+ * Add the stages, call {@link #start()}, submit frames with
+ * {@link #submit(Object)}, and call {@link #stop()} when done.
+ * </p>
+ */
+public class CameraFrameProcessor {
+
+    /** The default capacity of the queue in front of each stage. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+    /**
+     * One processing step.
+     */
+    public interface Stage {
+
+        /**
+         * Processes a frame. Called on the stage's worker thread.
+         *
+         * @param input The output of the previous stage, or the submitted
+         *              frame for the first stage.
+         * @return The input for the next stage, or null to stop processing
+         *         this frame.
+         */
+        Object process(Object input);
+    }
+
+    /**
+     * Receives the output of the last stage.
+     */
+    public interface ResultListener {
+
+        /**
+         * Called on the thread that created the processor.
+         *
+         * @param result The output of the last stage.
+         */
+        void onFrameProcessed(Object result);
+    }
+
+    /** */
+    private final ResultListener mListener;
+
+    /** */
+    private final int mQueueCapacity;
+
+    /** */
+    private final Handler mHandler = new Handler();
+
+    /** */
+    private final List<StageWorker> mWorkers = new ArrayList<StageWorker>();
+
+    /** */
+    private final Object mLock = new Object();
+
+    /** The newest result not yet delivered, or null. Guarded by mLock. */
+    private Object mPendingResult;
+
+    /** */
+    private boolean mStarted;
+
+    /** Guarded by mLock. */
+    private int mSubmittedCount;
+
+    /** Guarded by mLock. */
+    private int mProcessedCount;
+
+    /** Guarded by mLock. */
+    private int mDroppedCount;
+
+    /** Delivers the pending result. */
+    private final Runnable mDeliverResult = new Runnable() {
+        @Override
+        public void run() {
+            Object result;
+            synchronized (mLock) {
+                result = mPendingResult;
+                mPendingResult = null;
+            }
+            if (result != null && mListener != null) {
+                mListener.onFrameProcessed(result);
+            }
+        }
+    };
+
+    /**
+     * Creates a processor with the default queue capacity.
+     *
+     * @param listener Optional. Receives the output of the last stage.
+     */
+    public CameraFrameProcessor(final ResultListener listener) {
+        this(listener, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a processor.
+     *
+     * @param listener      Optional. Receives the output of the last stage.
+     * @param queueCapacity The capacity of the queue in front of each stage.
+     */
+    public CameraFrameProcessor(final ResultListener listener, final int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity has illegal value");
+        }
+        mListener = listener;
+        mQueueCapacity = queueCapacity;
+    }
+
+    /**
+     * Appends a stage. Stages can only be added before {@link #start()}.
+     *
+     * @param stage The stage.
+     */
+    public void addStage(final Stage stage) {
+        if (stage == null) {
+            throw new IllegalArgumentException("stage has illegal value");
+        }
+        if (mStarted) {
+            throw new IllegalStateException("Processor has been started");
+        }
+        mWorkers.add(new StageWorker(stage, mWorkers.size()));
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        if (mWorkers.isEmpty()) {
+            throw new IllegalStateException("No stages have been added");
+        }
+        mStarted = true;
+        for (StageWorker worker : mWorkers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Stops the worker threads and drops the frames still waiting. A stage
+     * that is busy finishes its current frame, but its output is discarded.
+     * A stopped processor cannot be started again.
+     */
+    public void stop() {
+        for (StageWorker worker : mWorkers) {
+            worker.interrupt();
+            Object input;
+            while ((input = worker.mInput.poll()) != null) {
+                recycle(input);
+            }
+        }
+        mHandler.removeCallbacks(mDeliverResult);
+        synchronized (mLock) {
+            mPendingResult = null;
+        }
+    }
+
+    /**
+     * Submits a frame to the first stage. Can be called from any thread.
+     *
+     * @param frame The frame, typically a {@link CameraEvent}.
+     */
+    public void submit(final Object frame) {
+        if (frame == null) {
+            throw new IllegalArgumentException("frame has illegal value");
+        }
+        if (!mStarted) {
+            throw new IllegalStateException("Processor has not been started");
+        }
+        synchronized (mLock) {
+            mSubmittedCount++;
+        }
+        enqueue(0, frame);
+    }
+
+    /**
+     * Returns the number of stages.
+     *
+     * @return The stage count.
+     */
+    public int getStageCount() {
+        return mWorkers.size();
+    }
+
+    /**
+     * Returns the average time a stage took per frame.
+     *
+     * @param index The stage index, in the order the stages were added.
+     * @return The average time in microseconds, 0 if no frame was processed.
+     */
+    public long getAverageStageTime(final int index) {
+        return mWorkers.get(index).getAverageTime();
+    }
+
+    /**
+     * Returns the longest time a stage took for one frame.
+     *
+     * @param index The stage index, in the order the stages were added.
+     * @return The maximum time in microseconds.
+     */
+    public long getMaxStageTime(final int index) {
+        return mWorkers.get(index).getMaxTime();
+    }
+
+    /**
+     * Returns the number of frames submitted.
+     *
+     * @return The submitted frame count.
+     */
+    public int getSubmittedFrameCount() {
+        synchronized (mLock) {
+            return mSubmittedCount;
+        }
+    }
+
+    /**
+     * Returns the number of frames that passed the last stage.
+     *
+     * @return The processed frame count.
+     */
+    public int getProcessedFrameCount() {
+        synchronized (mLock) {
+            return mProcessedCount;
+        }
+    }
+
+    /**
+     * Returns the number of frames and results dropped because a queue was
+     * full or the listener had not taken the previous result yet.
+     *
+     * @return The dropped frame count.
+     */
+    public int getDroppedFrameCount() {
+        synchronized (mLock) {
+            return mDroppedCount;
+        }
+    }
+
+    /**
+     * Sets the frame counts and stage times back to 0.
+     */
+    public void resetStatistics() {
+        synchronized (mLock) {
+            mSubmittedCount = 0;
+            mProcessedCount = 0;
+            mDroppedCount = 0;
+        }
+        for (StageWorker worker : mWorkers) {
+            worker.resetTimes();
+        }
+    }
+
+    /** Puts a frame in front of a stage, dropping the oldest if full. */
+    private void enqueue(final int index, final Object frame) {
+        ArrayBlockingQueue<Object> queue = mWorkers.get(index).mInput;
+        while (!queue.offer(frame)) {
+            Object oldest = queue.poll();
+            if (oldest != null) {
+                recycle(oldest);
+                synchronized (mLock) {
+                    mDroppedCount++;
+                }
+            }
+        }
+    }
+
+    /** Hands the output of the last stage to the listener thread. */
+    private void deliver(final Object result) {
+        synchronized (mLock) {
+            mProcessedCount++;
+            if (mPendingResult != null) {
+                mDroppedCount++;
+            }
+            mPendingResult = result;
+        }
+        mHandler.removeCallbacks(mDeliverResult);
+        mHandler.post(mDeliverResult);
+    }
+
+    /** Releases a dropped frame if it holds a pooled buffer. */
+    private static void recycle(final Object frame) {
+        if (frame instanceof CameraEvent) {
+            ((CameraEvent) frame).release();
+        }
+    }
+
+    /**
+     * Runs one stage.
+     */
+    private final class StageWorker extends Thread {
+
+        /** */
+        private final Stage mStage;
+
+        /** */
+        private final int mIndex;
+
+        /** The frames waiting for this stage. */
+        private final ArrayBlockingQueue<Object> mInput;
+
+        /** Guarded by this. */
+        private long mCount;
+
+        /** Guarded by this. */
+        private long mTotalNanos;
+
+        /** Guarded by this. */
+        private long mMaxNanos;
+
+        /**
+         * Creates a worker.
+         *
+         * @param stage The stage to run.
+         * @param index The stage index.
+         */
+        StageWorker(final Stage stage, final int index) {
+            super("CameraFrameStage-" + index);
+            setDaemon(true);
+            mStage = stage;
+            mIndex = index;
+            mInput = new ArrayBlockingQueue<Object>(mQueueCapacity);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                Object input;
+                try {
+                    input = mInput.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                long start = System.nanoTime();
+                Object output = null;
+                try {
+                    output = mStage.process(input);
+                } catch (RuntimeException e) {
+                    if (Dbg.DEBUG) {
+                        Dbg.e("Camera frame stage " + mIndex + " failed", e);
+                    }
+                }
+                addTime(System.nanoTime() - start);
+
+                if (output == null || isInterrupted()) {
+                    continue;
+                }
+                if (mIndex + 1 < mWorkers.size()) {
+                    enqueue(mIndex + 1, output);
+                } else {
+                    deliver(output);
+                }
+            }
+        }
+
+        /** */
+        private synchronized void addTime(final long nanos) {
+            mCount++;
+            mTotalNanos += nanos;
+            mMaxNanos = Math.max(mMaxNanos, nanos);
+        }
+
+        /** */
+        private synchronized long getAverageTime() {
+            return (mCount == 0) ? 0 : mTotalNanos / mCount / 1000;
+        }
+
+        /** */
+        private synchronized long getMaxTime() {
+            return mMaxNanos / 1000;
+        }
+
+        /** */
+        private synchronized void resetTimes() {
+            mCount = 0;
+            mTotalNanos = 0;
+            mMaxNanos = 0;
+        }
+    }
+}
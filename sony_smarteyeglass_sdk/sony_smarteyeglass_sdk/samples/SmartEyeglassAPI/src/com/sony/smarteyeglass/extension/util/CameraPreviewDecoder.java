@@ -0,0 +1,281 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Decodes camera JPEG frames into previews the size of the SmartEyeglass
+ * display.
+ * <p>
+ * The picture size is read from the JPEG header, and the decoder picks the
+ * largest power-of-two sample size that still leaves enough pixels for the
+ * display, so a 3M picture is never decoded at full size. Decoding reuses
+ * the bitmap of the previous frame where the platform allows it. The decoded
+ * picture is scaled to fit the display, keeping its aspect ratio, into a
+ * reused preview bitmap, which can be converted to a {@link DisplayFrame}.
+ * </p><p>
+ * Pictures are decoded as RGB_565; the platform JPEG decoder does not
+ * produce ALPHA_8. The returned bitmap and frame are reused by the next
+ * call, so show them before decoding the next frame. Instances are not
+ * thread safe.
+ * </p>
+ */
+public final class CameraPreviewDecoder {
+
+    /** */
+    private final int mWidth;
+
+    /** */
+    private final int mHeight;
+
+    /** */
+    private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+
+    /** */
+    private final int[] mJpegSize = new int[2];
+
+    /** */
+    private final Rect mDestination = new Rect();
+
+    /** */
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /** */
+    private final EightBitMonochromeImageEncoder mEncoder = new EightBitMonochromeImageEncoder();
+
+    /** The last decoded picture, reused for the next one. */
+    private Bitmap mDecoded;
+
+    /** The display-size preview. */
+    private Bitmap mPreview;
+
+    /** */
+    private Canvas mCanvas;
+
+    /** */
+    private byte[] mFrameBuffer;
+
+    /**
+     * Creates a decoder.
+     *
+     * @param width  The preview width, normally the display width.
+     * @param height The preview height, normally the display height.
+     */
+    public CameraPreviewDecoder(final int width, final int height) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("width has illegal value");
+        }
+        if (height <= 0) {
+            throw new IllegalArgumentException("height has illegal value");
+        }
+        mWidth = width;
+        mHeight = height;
+        mOptions.inPreferredConfig = Bitmap.Config.RGB_565;
+        mOptions.inMutable = true;
+        mOptions.inScaled = false;
+    }
+
+    /**
+     * Decodes a JPEG picture into a preview bitmap the size of this decoder.
+     *
+     * @param data   The JPEG data.
+     * @param length The length of the JPEG data.
+     * @return The preview, reused by the next call, or null if the data
+     *         could not be decoded.
+     */
+    public Bitmap decode(final byte[] data, final int length) {
+        if (!readJpegSize(data, length, mJpegSize)) {
+            mOptions.inJustDecodeBounds = true;
+            mOptions.inSampleSize = 1;
+            BitmapFactory.decodeByteArray(data, 0, length, mOptions);
+            mOptions.inJustDecodeBounds = false;
+            if (mOptions.outWidth <= 0 || mOptions.outHeight <= 0) {
+                return null;
+            }
+            mJpegSize[0] = mOptions.outWidth;
+            mJpegSize[1] = mOptions.outHeight;
+        }
+        int jpegWidth = mJpegSize[0];
+        int jpegHeight = mJpegSize[1];
+
+        float scale = Math.min((float) mWidth / jpegWidth, (float) mHeight / jpegHeight);
+        int fitWidth = Math.max(1, Math.round(jpegWidth * scale));
+        int fitHeight = Math.max(1, Math.round(jpegHeight * scale));
+        mOptions.inSampleSize = computeSampleSize(jpegWidth, jpegHeight, fitWidth, fitHeight);
+
+        Bitmap decoded = decodeReusing(data, length);
+        if (decoded == null) {
+            return null;
+        }
+        mDecoded = decoded;
+
+        if (mPreview == null) {
+            mPreview = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.RGB_565);
+            mCanvas = new Canvas(mPreview);
+        }
+        int left = (mWidth - fitWidth) / 2;
+        int top = (mHeight - fitHeight) / 2;
+        mDestination.set(left, top, left + fitWidth, top + fitHeight);
+        mCanvas.drawColor(Color.BLACK);
+        mCanvas.drawBitmap(decoded, null, mDestination, mPaint);
+        return mPreview;
+    }
+
+    /**
+     * Decodes a JPEG picture into a display frame the size of this decoder.
+     *
+     * @param data   The JPEG data.
+     * @param length The length of the JPEG data.
+     * @return The frame, sharing its data with the next call, or null if
+     *         the data could not be decoded.
+     */
+    public DisplayFrame decodeFrame(final byte[] data, final int length) {
+        Bitmap preview = decode(data, length);
+        if (preview == null) {
+            return null;
+        }
+        mFrameBuffer = mEncoder.encode(preview, mFrameBuffer);
+        return new DisplayFrame(mFrameBuffer, mWidth, mHeight);
+    }
+
+    /**
+     * Recycles the reused bitmaps. The decoder can still be used afterwards.
+     */
+    public void release() {
+        if (mDecoded != null) {
+            mDecoded.recycle();
+            mDecoded = null;
+        }
+        if (mPreview != null) {
+            mPreview.recycle();
+            mPreview = null;
+            mCanvas = null;
+        }
+    }
+
+    /**
+     * Reads the picture size from the start-of-frame segment of a JPEG
+     * header, without decoding the picture.
+     *
+     * @param data   The JPEG data.
+     * @param length The length of the JPEG data.
+     * @param size   Receives the width and the height.
+     * @return True if the size was found.
+     */
+    public static boolean readJpegSize(final byte[] data, final int length, final int[] size) {
+        if (length < 4 || (data[0] & 0xff) != 0xff || (data[1] & 0xff) != 0xd8) {
+            return false;
+        }
+        int i = 2;
+        while (i + 4 <= length) {
+            if ((data[i] & 0xff) != 0xff) {
+                return false;
+            }
+            int marker = data[i + 1] & 0xff;
+            if (marker == 0xff) {
+                // fill byte
+                i++;
+                continue;
+            }
+            i += 2;
+            if (marker == 0x01 || (marker >= 0xd0 && marker <= 0xd8)) {
+                // markers without a segment
+                continue;
+            }
+            if (marker == 0xd9 || marker == 0xda) {
+                // end of image or start of scan before any frame header
+                return false;
+            }
+            int segmentLength = ((data[i] & 0xff) << 8) | (data[i + 1] & 0xff);
+            if (segmentLength < 2) {
+                return false;
+            }
+            if (marker >= 0xc0 && marker <= 0xcf
+                    && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+                if (i + 7 > length) {
+                    return false;
+                }
+                size[1] = ((data[i + 3] & 0xff) << 8) | (data[i + 4] & 0xff);
+                size[0] = ((data[i + 5] & 0xff) << 8) | (data[i + 6] & 0xff);
+                return size[0] > 0 && size[1] > 0;
+            }
+            i += segmentLength;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the largest power-of-two sample size that keeps a picture at
+     * least as large as the target size.
+     *
+     * @param width        The picture width.
+     * @param height       The picture height.
+     * @param targetWidth  The minimum width after sampling.
+     * @param targetHeight The minimum height after sampling.
+     * @return The sample size, 1 or more.
+     */
+    public static int computeSampleSize(final int width, final int height,
+            final int targetWidth, final int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth
+                && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /** Decodes into the previous bitmap if possible, else into a new one. */
+    private Bitmap decodeReusing(final byte[] data, final int length) {
+        if (mDecoded != null && !mDecoded.isRecycled()) {
+            mOptions.inBitmap = mDecoded;
+            try {
+                Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, length, mOptions);
+                if (bitmap != null) {
+                    return bitmap;
+                }
+            } catch (IllegalArgumentException e) {
+                // The previous bitmap does not fit this picture.
+                if (Dbg.DEBUG) {
+                    Dbg.v("CameraPreviewDecoder cannot reuse bitmap");
+                }
+            }
+        }
+        mOptions.inBitmap = null;
+        return BitmapFactory.decodeByteArray(data, 0, length, mOptions);
+    }
+}
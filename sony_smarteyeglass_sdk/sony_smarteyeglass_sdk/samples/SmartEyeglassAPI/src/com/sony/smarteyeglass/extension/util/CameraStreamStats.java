@@ -0,0 +1,249 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.Arrays;
+
+import android.util.Log;
+
+/**
+ * Measures the quality of the camera stream as received by
+ * {@link SmartEyeglassControlUtils}.
+ * <p>
+ * For every frame read from the camera socket, the frame ID, size and
+ * arrival time are recorded. Gaps in the frame IDs are counted as missing
+ * frames, the time between arrivals is collected in a histogram, and the
+ * byte and frame rates are computed over the measurement period. When a
+ * frame is passed to
+ * {@link SmartEyeglassEventListener#onCameraReceived(CameraEvent)}, the time
+ * since it was read is recorded as its dispatch latency.
+ * </p><p>
+ * The statistics are reset when the camera is started. This class is
+ * thread safe.
+ * </p>
+ * @see SmartEyeglassControlUtils#getCameraStreamStats()
+ */
+public final class CameraStreamStats {
+
+    /** Upper limits of the inter-arrival histogram buckets, in milliseconds. */
+    private static final int[] BUCKET_LIMITS = {10, 20, 33, 50, 67, 100, 200, 500};
+
+    /** */
+    private long mFrameCount;
+
+    /** */
+    private long mByteCount;
+
+    /** */
+    private long mMissingCount;
+
+    /** The last frame ID, or -1 before the first frame. */
+    private int mLastFrameId = -1;
+
+    /** Arrival time of the first frame, in nanoseconds. */
+    private long mFirstArrival;
+
+    /** Arrival time of the last frame, in nanoseconds. */
+    private long mLastArrival;
+
+    /** Counts per bucket, the last one for longer intervals. */
+    private final long[] mHistogram = new long[BUCKET_LIMITS.length + 1];
+
+    /** */
+    private long mDispatchCount;
+
+    /** */
+    private long mTotalLatency;
+
+    /** */
+    private long mMaxLatency;
+
+    /**
+     * Records a frame read from the camera socket.
+     *
+     * @param frameId     The frame ID.
+     * @param byteCount   The size of the frame data.
+     * @param arrivalTime The time the frame was read, from {@link System#nanoTime()}.
+     */
+    synchronized void onFrameReceived(final int frameId, final int byteCount, final long arrivalTime) {
+        if (mFrameCount == 0) {
+            mFirstArrival = arrivalTime;
+        } else {
+            long interval = (arrivalTime - mLastArrival) / 1000000;
+            int bucket = 0;
+            while (bucket < BUCKET_LIMITS.length && interval >= BUCKET_LIMITS[bucket]) {
+                bucket++;
+            }
+            mHistogram[bucket]++;
+        }
+        // A lower ID means the host started a new sequence.
+        if (mLastFrameId >= 0 && frameId > mLastFrameId + 1) {
+            mMissingCount += frameId - mLastFrameId - 1;
+        }
+        mLastFrameId = frameId;
+        mLastArrival = arrivalTime;
+        mFrameCount++;
+        mByteCount += byteCount;
+    }
+
+    /**
+     * Records the dispatch of a frame to the listener.
+     *
+     * @param arrivalTime The time the frame was read, from {@link System#nanoTime()}.
+     */
+    synchronized void onFrameDispatched(final long arrivalTime) {
+        long latency = System.nanoTime() - arrivalTime;
+        mDispatchCount++;
+        mTotalLatency += latency;
+        mMaxLatency = Math.max(mMaxLatency, latency);
+    }
+
+    /**
+     * Sets all statistics back to 0.
+     */
+    public synchronized void reset() {
+        mFrameCount = 0;
+        mByteCount = 0;
+        mMissingCount = 0;
+        mLastFrameId = -1;
+        mFirstArrival = 0;
+        mLastArrival = 0;
+        Arrays.fill(mHistogram, 0);
+        mDispatchCount = 0;
+        mTotalLatency = 0;
+        mMaxLatency = 0;
+    }
+
+    /**
+     * Returns the number of frames received.
+     *
+     * @return The frame count.
+     */
+    public synchronized long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Returns the number of frames the host did not deliver, judging from
+     * gaps in the frame IDs.
+     *
+     * @return The missing frame count.
+     */
+    public synchronized long getMissingFrameCount() {
+        return mMissingCount;
+    }
+
+    /**
+     * Returns the average number of frames received per second, between
+     * the first and the last frame.
+     *
+     * @return The frame rate, 0 if fewer than two frames were received.
+     */
+    public synchronized float getFramesPerSecond() {
+        long elapsed = mLastArrival - mFirstArrival;
+        return (mFrameCount < 2 || elapsed <= 0) ? 0 : (mFrameCount - 1) * 1e9f / elapsed;
+    }
+
+    /**
+     * Returns the average number of bytes received per second, between the
+     * first and the last frame.
+     *
+     * @return The byte rate, 0 if fewer than two frames were received.
+     */
+    public synchronized long getBytesPerSecond() {
+        long elapsed = mLastArrival - mFirstArrival;
+        return (mFrameCount < 2 || elapsed <= 0) ? 0 : (long) (mByteCount * 1e9 / elapsed);
+    }
+
+    /**
+     * Returns the upper limits of the inter-arrival histogram buckets. The
+     * histogram has one more bucket, for longer intervals.
+     *
+     * @return The limits in milliseconds.
+     */
+    public static int[] getInterArrivalBucketLimits() {
+        return BUCKET_LIMITS.clone();
+    }
+
+    /**
+     * Returns the histogram of the times between two frame arrivals.
+     *
+     * @return The count per bucket.
+     * @see #getInterArrivalBucketLimits()
+     */
+    public synchronized long[] getInterArrivalHistogram() {
+        return mHistogram.clone();
+    }
+
+    /**
+     * Returns the average time from reading a frame to passing it to the
+     * listener.
+     *
+     * @return The average latency in microseconds.
+     */
+    public synchronized long getAverageDispatchLatency() {
+        return (mDispatchCount == 0) ? 0 : mTotalLatency / mDispatchCount / 1000;
+    }
+
+    /**
+     * Returns the longest time from reading a frame to passing it to the
+     * listener.
+     *
+     * @return The maximum latency in microseconds.
+     */
+    public synchronized long getMaxDispatchLatency() {
+        return mMaxLatency / 1000;
+    }
+
+    /**
+     * Writes the statistics to the log at info level.
+     *
+     * @param tag The log tag.
+     */
+    public void dump(final String tag) {
+        Log.i(tag, toString());
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("CameraStreamStats: frames:%d, missing:%d, fps:%.1f, bytes/s:%d",
+                mFrameCount, mMissingCount, getFramesPerSecond(), getBytesPerSecond()));
+        sb.append(String.format(", latency avg:%dus max:%dus, intervals",
+                getAverageDispatchLatency(), getMaxDispatchLatency()));
+        for (int i = 0; i < mHistogram.length; i++) {
+            sb.append((i < BUCKET_LIMITS.length) ? " <" + BUCKET_LIMITS[i] : " >=" + BUCKET_LIMITS[i - 1]);
+            sb.append("ms:").append(mHistogram[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+/**
+ * A consumer's subscription to the camera stream. Each subscription has its
+ * own queue and delivery policy, and delivers on its own looper thread, so
+ * a slow consumer only drops its own frames.
+ *
+ * @see SmartEyeglassControlUtils#subscribeCamera(CameraEventConsumer, int)
+ */
+public final class CameraSubscription {
+
+    /** */
+    private final CameraEventDispatcher mDispatcher;
+
+    /**
+     * Creates a subscription.
+     *
+     * @param dispatcher The dispatcher delivering to the consumer.
+     */
+    CameraSubscription(final CameraEventDispatcher dispatcher) {
+        mDispatcher = dispatcher;
+    }
+
+    /** */
+    CameraEventDispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    /**
+     * Returns the number of frames delivered to the consumer.
+     *
+     * @return The delivered frame count.
+     */
+    public int getDeliveredCount() {
+        return mDispatcher.getDeliveredCount();
+    }
+
+    /**
+     * Returns the number of frames dropped by the delivery policy.
+     *
+     * @return The dropped frame count.
+     */
+    public int getDroppedCount() {
+        return mDispatcher.getDroppedCount();
+    }
+}
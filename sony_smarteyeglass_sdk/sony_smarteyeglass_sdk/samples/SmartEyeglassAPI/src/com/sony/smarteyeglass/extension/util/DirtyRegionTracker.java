@@ -0,0 +1,206 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Rect;
+
+/**
+ * Remembers the last full frame sent to the SmartEyeglass display and
+ * computes which parts of a new frame differ from it.
+ * <p>
+ * The frame is split into square tiles. Changed tiles are merged into
+ * horizontal runs, and runs that span the same columns on consecutive tile
+ * rows are merged into one rectangle. When the changed area is too large, or
+ * too fragmented, the caller is told to send the whole frame instead.
+ * </p>
+ */
+final class DirtyRegionTracker {
+
+    /** The edge length of a tile, in pixels. */
+    private static final int TILE_SIZE = 16;
+
+    /** The maximum number of partial updates sent for one frame. */
+    private static final int MAX_REGION_COUNT = 8;
+
+    /**
+     * The fraction (in percent) of the frame area above which a full frame
+     * is cheaper than a set of partial updates.
+     */
+    private static final int MAX_DIRTY_AREA_PERCENT = 50;
+
+    /** The last frame sent, or null if the display content is unknown. */
+    private byte[] mFrame;
+
+    /** The width of the remembered frame. */
+    private int mWidth;
+
+    /** The height of the remembered frame. */
+    private int mHeight;
+
+    /**
+     * Forgets the remembered frame, so that the next frame is sent in full.
+     */
+    public void invalidate() {
+        mFrame = null;
+    }
+
+    /**
+     * Compares a new frame with the remembered one and remembers the new
+     * frame.
+     *
+     * @param frame  The new frame, one byte per pixel.
+     * @param width  The frame width.
+     * @param height The frame height.
+     * @return The changed regions, an empty list if nothing changed, or null
+     *         if the whole frame must be sent.
+     */
+    public List<Rect> update(final byte[] frame, final int width, final int height) {
+        if (mFrame == null || mWidth != width || mHeight != height) {
+            remember(frame, width, height);
+            return null;
+        }
+
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        List<Rect> regions = new ArrayList<Rect>();
+        List<Rect> open = new ArrayList<Rect>();
+        List<Rect> next = new ArrayList<Rect>();
+        int dirtyArea = 0;
+
+        for (int row = 0; row < rows; row++) {
+            int top = row * TILE_SIZE;
+            int bottom = Math.min(top + TILE_SIZE, height);
+            int column = 0;
+            while (column < columns) {
+                if (!isTileDirty(frame, column, top, bottom)) {
+                    column++;
+                    continue;
+                }
+                int first = column;
+                while (column < columns && isTileDirty(frame, column, top, bottom)) {
+                    column++;
+                }
+                int left = first * TILE_SIZE;
+                int right = Math.min(column * TILE_SIZE, width);
+                dirtyArea += (right - left) * (bottom - top);
+
+                Rect region = takeRegion(open, left, right, top);
+                if (region == null) {
+                    region = new Rect(left, top, right, bottom);
+                } else {
+                    region.bottom = bottom;
+                }
+                next.add(region);
+            }
+            regions.addAll(open);
+            open.clear();
+            List<Rect> swap = open;
+            open = next;
+            next = swap;
+
+            if (regions.size() + open.size() > MAX_REGION_COUNT
+                    || dirtyArea * 100 > width * height * MAX_DIRTY_AREA_PERCENT) {
+                remember(frame, width, height);
+                return null;
+            }
+        }
+        regions.addAll(open);
+
+        remember(frame, width, height);
+        return regions;
+    }
+
+    /**
+     * Copies a region out of a frame into a new tightly packed array.
+     *
+     * @param frame  The frame, one byte per pixel.
+     * @param width  The frame width.
+     * @param region The region to copy.
+     * @return The region pixels.
+     */
+    public static byte[] crop(final byte[] frame, final int width, final Rect region) {
+        int regionWidth = region.width();
+        int regionHeight = region.height();
+        byte[] data = new byte[regionWidth * regionHeight];
+        for (int y = 0; y < regionHeight; y++) {
+            System.arraycopy(frame, (region.top + y) * width + region.left,
+                    data, y * regionWidth, regionWidth);
+        }
+        return data;
+    }
+
+    /** */
+    private boolean isTileDirty(final byte[] frame, final int column,
+            final int top, final int bottom) {
+        int left = column * TILE_SIZE;
+        int right = Math.min(left + TILE_SIZE, mWidth);
+        for (int y = top; y < bottom; y++) {
+            int start = y * mWidth;
+            for (int i = start + left, end = start + right; i < end; i++) {
+                if (frame[i] != mFrame[i]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes and returns the region of the previous tile row that covers
+     * exactly the given columns and ends at the given row.
+     */
+    private static Rect takeRegion(final List<Rect> open, final int left,
+            final int right, final int top) {
+        for (int i = 0; i < open.size(); i++) {
+            Rect region = open.get(i);
+            if (region.left == left && region.right == right && region.bottom == top) {
+                open.remove(i);
+                return region;
+            }
+        }
+        return null;
+    }
+
+    /** */
+    private void remember(final byte[] frame, final int width, final int height) {
+        int length = width * height;
+        if (mFrame == null || mFrame.length != length) {
+            mFrame = new byte[length];
+        }
+        System.arraycopy(frame, 0, mFrame, 0, length);
+        mWidth = width;
+        mHeight = height;
+    }
+}
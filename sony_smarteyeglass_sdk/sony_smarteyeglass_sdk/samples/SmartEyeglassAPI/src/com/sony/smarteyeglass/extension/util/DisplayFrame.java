@@ -0,0 +1,162 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import android.graphics.Bitmap;
+
+/**
+ * An image already converted to the 8-bit monochrome raw format of the
+ * SmartEyeglass display, together with its size and screen position.
+ * <p>
+ * Create a frame once for a screen that is shown many times, for example a
+ * page of a carousel, and show it with
+ * {@link SmartEyeglassControlUtils#showFrame(DisplayFrame)}. Showing a frame
+ * skips the conversion. The data is not copied, so it must not be changed
+ * while the frame is in use.
+ * </p>
+ */
+public final class DisplayFrame {
+
+    /** The offset of a frame that is shown at the default position. */
+    public static final int NO_OFFSET = -1;
+
+    /** */
+    private final byte[] mData;
+
+    /** */
+    private final int mWidth;
+
+    /** */
+    private final int mHeight;
+
+    /** */
+    private final int mX;
+
+    /** */
+    private final int mY;
+
+    /**
+     * Creates a frame shown at the default position.
+     *
+     * @param data   The pixels, one byte of luminance per pixel, row by row.
+     * @param width  The frame width.
+     * @param height The frame height.
+     */
+    public DisplayFrame(final byte[] data, final int width, final int height) {
+        this(data, width, height, NO_OFFSET, NO_OFFSET);
+    }
+
+    /**
+     * Creates a frame that updates a part of the screen.
+     *
+     * @param data   The pixels, one byte of luminance per pixel, row by row.
+     * @param width  The frame width.
+     * @param height The frame height.
+     * @param x      The x position at which to draw, or {@link #NO_OFFSET}.
+     * @param y      The y position at which to draw, or {@link #NO_OFFSET}.
+     */
+    public DisplayFrame(final byte[] data, final int width, final int height,
+            final int x, final int y) {
+        if (data == null) {
+            throw new IllegalArgumentException("data has illegal value");
+        }
+        if (width <= 0 || height <= 0 || data.length != width * height) {
+            throw new IllegalArgumentException("data does not match the frame size");
+        }
+        mData = data;
+        mWidth = width;
+        mHeight = height;
+        mX = x;
+        mY = y;
+    }
+
+    /**
+     * Converts a bitmap to a frame shown at the default position.
+     *
+     * @param bitmap The bitmap, ARGB_8888, RGB_565 or ALPHA_8.
+     * @return The frame.
+     */
+    public static DisplayFrame fromBitmap(final Bitmap bitmap) {
+        return fromBitmap(bitmap, NO_OFFSET, NO_OFFSET);
+    }
+
+    /**
+     * Converts a bitmap to a frame that updates a part of the screen.
+     *
+     * @param bitmap The bitmap, ARGB_8888, RGB_565 or ALPHA_8.
+     * @param x      The x position at which to draw.
+     * @param y      The y position at which to draw.
+     * @return The frame.
+     */
+    public static DisplayFrame fromBitmap(final Bitmap bitmap, final int x, final int y) {
+        if (bitmap == null) {
+            throw new IllegalArgumentException("bitmap has illegal value");
+        }
+        byte[] data = EightBitMonochromeImageEncoder.convert(bitmap, 0, bitmap.getHeight());
+        return new DisplayFrame(data, bitmap.getWidth(), bitmap.getHeight(), x, y);
+    }
+
+    /**
+     * @return The pixels, one byte of luminance per pixel.
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * @return The frame width.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return The frame height.
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return The x position, or {@link #NO_OFFSET}.
+     */
+    public int getX() {
+        return mX;
+    }
+
+    /**
+     * @return The y position, or {@link #NO_OFFSET}.
+     */
+    public int getY() {
+        return mY;
+    }
+}
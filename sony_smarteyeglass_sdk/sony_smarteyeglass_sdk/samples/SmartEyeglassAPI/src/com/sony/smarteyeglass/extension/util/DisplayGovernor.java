@@ -0,0 +1,240 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.sony.smarteyeglass.SmartEyeglassControl;
+
+/**
+ * Decides when full-screen frames are sent, based on the display state and
+ * power mode reported by the host application.
+ * <p>
+ * While the display is off or the SmartEyeglass is in standby, frames are
+ * held back and only the latest one is kept. It is sent as a catch-up frame
+ * when the display becomes visible again. In normal power mode, frames are
+ * sent at most once per normal power frame interval; a frame submitted
+ * sooner waits for the interval to pass and is replaced by any newer frame.
+ * </p><p>
+ * Must be used from the thread that created it.
+ * </p>
+ */
+final class DisplayGovernor {
+
+    /** The default minimum time between frames in normal power mode, in milliseconds. */
+    static final long DEFAULT_NORMAL_POWER_FRAME_INTERVAL = 100;
+
+    /** Sends the frames let through by the governor. */
+    interface FrameSink {
+
+        /**
+         * Sends a full-screen frame.
+         *
+         * @param bitmap The frame to send.
+         */
+        void sendFrame(Bitmap bitmap);
+    }
+
+    /** */
+    private final FrameSink mSink;
+
+    /** */
+    private final Handler mHandler = new Handler();
+
+    /** */
+    private boolean mDisplayOn = true;
+
+    /** */
+    private boolean mStandby;
+
+    /** The current power mode. The host starts apps in normal mode. */
+    private int mPowerMode = SmartEyeglassControl.Intents.POWER_MODE_NORMAL;
+
+    /** */
+    private long mNormalPowerFrameInterval = DEFAULT_NORMAL_POWER_FRAME_INTERVAL;
+
+    /** Time the last frame was sent, from {@link SystemClock#uptimeMillis()}. */
+    private long mLastFrameTime;
+
+    /** The frame waiting to be sent, or null. */
+    private Bitmap mPending;
+
+    /** */
+    private int mSkippedCount;
+
+    /** Sends the waiting frame once the frame interval has passed. */
+    private final Runnable mSendPending = new Runnable() {
+        @Override
+        public void run() {
+            sendPending();
+        }
+    };
+
+    /**
+     * Creates a governor.
+     *
+     * @param sink Receives the frames to send.
+     */
+    DisplayGovernor(final FrameSink sink) {
+        mSink = sink;
+    }
+
+    /**
+     * Checks whether the display content can currently be seen.
+     *
+     * @return True if the display is off or in standby.
+     */
+    boolean isSuspended() {
+        return !mDisplayOn || mStandby;
+    }
+
+    /**
+     * Submits a full-screen frame. It is sent right away if the display is
+     * visible and the frame interval allows it, otherwise it waits and
+     * replaces any frame already waiting.
+     *
+     * @param bitmap The frame.
+     */
+    void submit(final Bitmap bitmap) {
+        if (mPending != null) {
+            mSkippedCount++;
+        }
+        mPending = bitmap;
+        sendPending();
+    }
+
+    /**
+     * Checks whether a partial update or animation frame may be sent now.
+     * Such updates cannot be merged into a catch-up frame, so they are
+     * dropped while the display is not visible.
+     *
+     * @return True if the update should be sent.
+     */
+    boolean admitUpdate() {
+        if (isSuspended()) {
+            mSkippedCount++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Updates the display status.
+     *
+     * @param status One of the {@code DISPLAY_STATUS_} constants.
+     */
+    void setDisplayStatus(final int status) {
+        mDisplayOn = (status != SmartEyeglassControl.Intents.DISPLAY_STATUS_OFF);
+        onStateChanged();
+    }
+
+    /**
+     * Updates the standby status.
+     *
+     * @param status One of the {@code STANDBY_MODE_} constants.
+     */
+    void setStandbyStatus(final int status) {
+        mStandby = (status == SmartEyeglassControl.Intents.STANDBY_MODE_ON);
+        onStateChanged();
+    }
+
+    /**
+     * Updates the power mode.
+     *
+     * @param powerMode One of the {@code POWER_MODE_} constants.
+     */
+    void setPowerMode(final int powerMode) {
+        mPowerMode = powerMode;
+        onStateChanged();
+    }
+
+    /**
+     * Sets the minimum time between frames in normal power mode.
+     *
+     * @param interval The interval in milliseconds, 0 for no limit.
+     */
+    void setNormalPowerFrameInterval(final long interval) {
+        mNormalPowerFrameInterval = interval;
+        onStateChanged();
+    }
+
+    /**
+     * Returns the number of frames that were dropped or replaced by a newer
+     * frame before they could be sent.
+     *
+     * @return The skipped frame count.
+     */
+    int getSkippedFrameCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * Drops the waiting frame.
+     */
+    void clear() {
+        mHandler.removeCallbacks(mSendPending);
+        mPending = null;
+    }
+
+    /** */
+    private void onStateChanged() {
+        if (Dbg.DEBUG) {
+            Dbg.d("DisplayGovernor suspended: " + isSuspended() + " power mode: " + mPowerMode
+                    + " skipped: " + mSkippedCount);
+        }
+        sendPending();
+    }
+
+    /** */
+    private void sendPending() {
+        mHandler.removeCallbacks(mSendPending);
+        if (mPending == null || isSuspended()) {
+            return;
+        }
+
+        long interval = (mPowerMode == SmartEyeglassControl.Intents.POWER_MODE_NORMAL)
+                ? mNormalPowerFrameInterval : 0;
+        long now = SystemClock.uptimeMillis();
+        long delay = mLastFrameTime + interval - now;
+        if (mLastFrameTime != 0 && delay > 0) {
+            mHandler.postDelayed(mSendPending, delay);
+            return;
+        }
+
+        Bitmap bitmap = mPending;
+        mPending = null;
+        mLastFrameTime = now;
+        mSink.sendFrame(bitmap);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+/**
+ * Limits the number of display frames that are on their way to the
+ * SmartEyeglass at the same time.
+ * <p>
+ * Each frame is sent with
+ * {@link SmartEyeglassControlUtils#showBitmapWithCallback(Bitmap, int)} and
+ * a transaction number chosen by the queue. When the number of frames that
+ * have not been confirmed yet reaches the in-flight limit, a submitted frame
+ * is held back. A newer frame replaces a held-back one, which is then counted
+ * as dropped. The held-back frame is converted and sent when a result for an
+ * earlier frame arrives.
+ * </p><p>
+ * A frame confirmed later than the late threshold is counted as late. A frame
+ * that is not confirmed within the timeout is counted as late and no longer
+ * counts towards the in-flight limit.
+ * </p><p>
+ * The queue picks its own transaction numbers. Do not call
+ * {@code showBitmapWithCallback} directly while a queue is in use. The
+ * results are still passed on to
+ * {@link SmartEyeglassEventListener#onResultShowBitmap(int, int)}.
+ * Use the queue from the thread that created the
+ * {@link SmartEyeglassControlUtils} instance.
+ * </p>
+ */
+public class DisplaySubmissionQueue {
+
+    /** The default late threshold, in milliseconds. */
+    public static final long DEFAULT_LATE_THRESHOLD = 500;
+
+    /** The default confirmation timeout, in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 3000;
+
+    /** */
+    private final SmartEyeglassControlUtils mUtils;
+
+    /** */
+    private final int mMaxInFlight;
+
+    /** */
+    private final long mLateThreshold;
+
+    /** */
+    private final long mTimeout;
+
+    /** */
+    private final Handler mHandler = new Handler();
+
+    /** Send times of the unconfirmed frames, by transaction number. */
+    private final SparseArray<Long> mInFlight = new SparseArray<Long>();
+
+    /** The frame waiting for a free slot, or null. */
+    private Bitmap mPending;
+
+    /** */
+    private int mNextTransactionNumber = 1;
+
+    /** */
+    private int mSentCount;
+
+    /** */
+    private int mDroppedCount;
+
+    /** */
+    private int mLateCount;
+
+    /** Forgets frames that were not confirmed in time. */
+    private final Runnable mTimeoutCheck = new Runnable() {
+        @Override
+        public void run() {
+            long now = SystemClock.uptimeMillis();
+            for (int i = mInFlight.size() - 1; i >= 0; i--) {
+                if (now - mInFlight.valueAt(i) >= mTimeout) {
+                    if (Dbg.DEBUG) {
+                        Dbg.w("Display frame timed out: " + mInFlight.keyAt(i));
+                    }
+                    mInFlight.removeAt(i);
+                    mLateCount++;
+                }
+            }
+            scheduleTimeoutCheck();
+            sendPending();
+        }
+    };
+
+    /**
+     * Creates a queue with the default late threshold and timeout, and
+     * attaches it to the given instance.
+     *
+     * @param utils       The instance used to send frames.
+     * @param maxInFlight The maximum number of unconfirmed frames.
+     */
+    public DisplaySubmissionQueue(final SmartEyeglassControlUtils utils, final int maxInFlight) {
+        this(utils, maxInFlight, DEFAULT_LATE_THRESHOLD, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a queue and attaches it to the given instance. An instance has
+     * at most one queue; a new queue replaces the previous one.
+     *
+     * @param utils         The instance used to send frames.
+     * @param maxInFlight   The maximum number of unconfirmed frames.
+     * @param lateThreshold Frames confirmed later than this, in milliseconds,
+     *                      are counted as late.
+     * @param timeout       Frames not confirmed within this time, in
+     *                      milliseconds, are given up.
+     */
+    public DisplaySubmissionQueue(final SmartEyeglassControlUtils utils, final int maxInFlight,
+            final long lateThreshold, final long timeout) {
+        if (utils == null) {
+            throw new IllegalArgumentException("utils has illegal value");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight has illegal value");
+        }
+        mUtils = utils;
+        mMaxInFlight = maxInFlight;
+        mLateThreshold = lateThreshold;
+        mTimeout = timeout;
+        utils.setDisplaySubmissionQueue(this);
+    }
+
+    /**
+     * Submits a frame for display. The frame is sent right away if the
+     * in-flight limit allows it. Otherwise it replaces any frame that is
+     * still waiting. The bitmap must not be recycled until it is sent.
+     *
+     * @param bitmap The bitmap to show.
+     */
+    public void submit(final Bitmap bitmap) {
+        if (bitmap == null) {
+            throw new IllegalArgumentException("bitmap has illegal value");
+        }
+        if (mPending != null) {
+            mDroppedCount++;
+        }
+        mPending = bitmap;
+        sendPending();
+    }
+
+    /**
+     * Drops the waiting frame and forgets all unconfirmed frames.
+     */
+    public void clear() {
+        if (mPending != null) {
+            mDroppedCount++;
+            mPending = null;
+        }
+        mInFlight.clear();
+        mHandler.removeCallbacks(mTimeoutCheck);
+    }
+
+    /**
+     * Handles a display result. Called by {@link SmartEyeglassControlUtils}.
+     *
+     * @param transactionNumber The transaction number of the result.
+     * @return True if the result was for a frame sent by this queue.
+     */
+    boolean onResult(final int transactionNumber) {
+        Long sentTime = mInFlight.get(transactionNumber);
+        if (sentTime == null) {
+            return false;
+        }
+        mInFlight.remove(transactionNumber);
+        if (SystemClock.uptimeMillis() - sentTime > mLateThreshold) {
+            mLateCount++;
+        }
+        sendPending();
+        return true;
+    }
+
+    /** */
+    private void sendPending() {
+        if (mPending == null || mInFlight.size() >= mMaxInFlight) {
+            return;
+        }
+        Bitmap bitmap = mPending;
+        mPending = null;
+
+        int transactionNumber = mNextTransactionNumber;
+        mNextTransactionNumber = (transactionNumber == Integer.MAX_VALUE) ? 1 : transactionNumber + 1;
+        mInFlight.put(transactionNumber, SystemClock.uptimeMillis());
+        mSentCount++;
+        mUtils.showBitmapWithCallback(bitmap, transactionNumber);
+        scheduleTimeoutCheck();
+    }
+
+    /** */
+    private void scheduleTimeoutCheck() {
+        mHandler.removeCallbacks(mTimeoutCheck);
+        if (mInFlight.size() == 0) {
+            return;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < mInFlight.size(); i++) {
+            oldest = Math.min(oldest, mInFlight.valueAt(i));
+        }
+        long delay = Math.max(0, oldest + mTimeout - SystemClock.uptimeMillis());
+        mHandler.postDelayed(mTimeoutCheck, delay);
+    }
+
+    /**
+     * Returns the number of frames sent and not confirmed yet.
+     *
+     * @return The in-flight frame count.
+     */
+    public int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * Returns the number of frames sent so far.
+     *
+     * @return The sent frame count.
+     */
+    public int getSentFrameCount() {
+        return mSentCount;
+    }
+
+    /**
+     * Returns the number of frames replaced by a newer frame before they
+     * could be sent.
+     *
+     * @return The dropped frame count.
+     */
+    public int getDroppedFrameCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Returns the number of frames confirmed after the late threshold, or
+     * not confirmed at all.
+     *
+     * @return The late frame count.
+     */
+    public int getLateFrameCount() {
+        return mLateCount;
+    }
+
+    /**
+     * Resets the sent, dropped and late frame counts.
+     */
+    public void resetStatistics() {
+        mSentCount = 0;
+        mDroppedCount = 0;
+        mLateCount = 0;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+
+/**
+ * Converts bitmaps to the 8-bit monochrome raw format of the SmartEyeglass
+ * display, one byte of luminance per pixel.
+ * <p>
+ * The conversion uses fixed-point luma weights and premultiplies the
+ * luminance with the pixel alpha. An instance keeps its scratch buffers
+ * between calls, so that encoding frames of the same size does not allocate.
+ * ALPHA_8 bitmaps, such as the one behind a {@link MonochromeCanvas}, are
+ * copied as they are: the alpha value is the luminance.
+ * Instances are not thread safe; use one encoder per thread.
+ * </p>
+ */
+public final class EightBitMonochromeImageEncoder {
+
+    /** Fixed-point luma weight for red, 0.299 * 256. */
+    private static final int LUMA_RED = 77;
+
+    /** Fixed-point luma weight for green, 0.587 * 256. */
+    private static final int LUMA_GREEN = 150;
+
+    /** Fixed-point luma weight for blue, 0.114 * 256. */
+    private static final int LUMA_BLUE = 29;
+
+    /** Luminance of every RGB_565 color, built on first use. */
+    private static byte[] sRgb565Luma;
+
+    /** Scratch buffer for ARGB pixels. */
+    private int[] mPixels;
+
+    /** Scratch buffer for RGB_565 pixels. */
+    private short[] mShortPixels;
+
+    /** Scratch buffer for ALPHA_8 pixels with padded rows. */
+    private byte[] mBytePixels;
+
+    /**
+     * Converts a row band of a bitmap into a new array.
+     * Kept for callers that do not hold an encoder instance.
+     *
+     * @param bitmap    The bitmap, ARGB_8888, RGB_565 or ALPHA_8.
+     * @param rowOffset The first row to convert.
+     * @param rowCount  The number of rows to convert.
+     * @return The converted pixels.
+     */
+    public static byte[] convert(final Bitmap bitmap, final int rowOffset, final int rowCount) {
+        byte[] result = new byte[bitmap.getWidth() * rowCount];
+        new EightBitMonochromeImageEncoder().encode(bitmap, rowOffset, rowCount, result, 0);
+        return result;
+    }
+
+    /**
+     * Converts a whole bitmap, reusing the given array when it has the
+     * right length.
+     *
+     * @param bitmap The bitmap, ARGB_8888, RGB_565 or ALPHA_8.
+     * @param reuse  The array to write to, or null.
+     * @return The converted pixels, in {@code reuse} if its length is
+     *         exactly width * height, otherwise in a new array.
+     */
+    public byte[] encode(final Bitmap bitmap, final byte[] reuse) {
+        int length = bitmap.getWidth() * bitmap.getHeight();
+        byte[] result = (reuse != null && reuse.length == length) ? reuse : new byte[length];
+        encode(bitmap, 0, bitmap.getHeight(), result, 0);
+        return result;
+    }
+
+    /**
+     * Converts a row band of a bitmap into a caller-owned array.
+     *
+     * @param bitmap    The bitmap, ARGB_8888, RGB_565 or ALPHA_8.
+     * @param rowOffset The first row to convert.
+     * @param rowCount  The number of rows to convert.
+     * @param out       The destination array.
+     * @param outOffset The index in {@code out} of the first converted pixel.
+     */
+    public void encode(final Bitmap bitmap, final int rowOffset, final int rowCount,
+            final byte[] out, final int outOffset) {
+        int width = bitmap.getWidth();
+        int rows = Math.min(rowCount, bitmap.getHeight() - rowOffset);
+        if (rowOffset < 0 || rows < 0) {
+            throw new IllegalArgumentException("Row band is outside of the bitmap");
+        }
+        if (out.length - outOffset < width * rows) {
+            throw new IllegalArgumentException("Output buffer is too small");
+        }
+
+        Config config = bitmap.getConfig();
+        if (config == Config.RGB_565) {
+            encodeRgb565(bitmap, rowOffset, rows, out, outOffset);
+        } else if (config == Config.ARGB_8888) {
+            encodeArgb(bitmap, rowOffset, rows, out, outOffset);
+        } else if (config == Config.ALPHA_8) {
+            encodeAlpha8(bitmap, rowOffset, rows, out, outOffset);
+        } else {
+            throw new IllegalArgumentException(
+                    "Only Bitmaps with config ARGB_8888, RGB_565 or ALPHA_8 are handled.");
+        }
+    }
+
+    /** */
+    private void encodeArgb(final Bitmap bitmap, final int rowOffset, final int rows,
+            final byte[] out, final int outOffset) {
+        int width = bitmap.getWidth();
+        int pixelCount = width * rows;
+        if (mPixels == null || mPixels.length < pixelCount) {
+            mPixels = new int[pixelCount];
+        }
+        int[] pixels = mPixels;
+        bitmap.getPixels(pixels, 0, width, 0, rowOffset, width, rows);
+
+        if (bitmap.hasAlpha()) {
+            for (int i = 0; i < pixelCount; i++) {
+                int argb = pixels[i];
+                int alpha = argb >>> 24;
+                int luma = (((argb >> 16) & 0xff) * LUMA_RED
+                        + ((argb >> 8) & 0xff) * LUMA_GREEN
+                        + (argb & 0xff) * LUMA_BLUE) >> 8;
+                // alpha + (alpha >> 7) maps 0..255 to 0..256 for the shift
+                out[outOffset + i] = (byte) ((luma * (alpha + (alpha >> 7))) >> 8);
+            }
+        } else {
+            for (int i = 0; i < pixelCount; i++) {
+                int argb = pixels[i];
+                out[outOffset + i] = (byte) ((((argb >> 16) & 0xff) * LUMA_RED
+                        + ((argb >> 8) & 0xff) * LUMA_GREEN
+                        + (argb & 0xff) * LUMA_BLUE) >> 8);
+            }
+        }
+    }
+
+    /** */
+    private void encodeRgb565(final Bitmap bitmap, final int rowOffset, final int rows,
+            final byte[] out, final int outOffset) {
+        int width = bitmap.getWidth();
+        int stride = bitmap.getRowBytes() / 2;
+        int length = stride * bitmap.getHeight();
+        if (mShortPixels == null || mShortPixels.length < length) {
+            mShortPixels = new short[length];
+        }
+        short[] pixels = mShortPixels;
+        // RGB_565 bitmaps are always opaque, so the raw pixels can be
+        // mapped through a lookup table without unpacking them to ARGB.
+        bitmap.copyPixelsToBuffer(ShortBuffer.wrap(pixels, 0, length));
+        byte[] lut = getRgb565Luma();
+
+        int o = outOffset;
+        for (int y = rowOffset, end = rowOffset + rows; y < end; y++) {
+            for (int i = y * stride, rowEnd = i + width; i < rowEnd; i++) {
+                out[o++] = lut[pixels[i] & 0xffff];
+            }
+        }
+    }
+
+    /** */
+    private void encodeAlpha8(final Bitmap bitmap, final int rowOffset, final int rows,
+            final byte[] out, final int outOffset) {
+        int width = bitmap.getWidth();
+        int stride = bitmap.getRowBytes();
+        int length = stride * bitmap.getHeight();
+        if (stride == width && rowOffset == 0 && rows == bitmap.getHeight()) {
+            // already in the raw format, no scratch buffer needed
+            bitmap.copyPixelsToBuffer(ByteBuffer.wrap(out, outOffset, length));
+            return;
+        }
+        if (mBytePixels == null || mBytePixels.length < length) {
+            mBytePixels = new byte[length];
+        }
+        bitmap.copyPixelsToBuffer(ByteBuffer.wrap(mBytePixels, 0, length));
+        for (int y = 0; y < rows; y++) {
+            System.arraycopy(mBytePixels, (rowOffset + y) * stride, out, outOffset + y * width, width);
+        }
+    }
+
+    /** */
+    private static synchronized byte[] getRgb565Luma() {
+        if (sRgb565Luma == null) {
+            byte[] lut = new byte[0x10000];
+            for (int i = 0; i < lut.length; i++) {
+                int r = (i >> 11) & 0x1f;
+                int g = (i >> 5) & 0x3f;
+                int b = i & 0x1f;
+                r = (r << 3) | (r >> 2);
+                g = (g << 2) | (g >> 4);
+                b = (b << 3) | (b >> 2);
+                lut[i] = (byte) ((r * LUMA_RED + g * LUMA_GREEN + b * LUMA_BLUE) >> 8);
+            }
+            sRgb565Luma = lut;
+        }
+        return sRgb565Luma;
+    }
+}
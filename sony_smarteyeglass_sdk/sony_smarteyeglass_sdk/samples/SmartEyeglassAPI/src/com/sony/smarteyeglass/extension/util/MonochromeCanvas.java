@@ -0,0 +1,144 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * A render target that holds one byte per pixel, matching the 8-bit
+ * monochrome raw format of the SmartEyeglass display.
+ * <p>
+ * The target is backed by an ALPHA_8 bitmap, so it needs a quarter of the
+ * memory of an ARGB_8888 bitmap, and its pixels are sent without any color
+ * conversion. Only the alpha of what is drawn is stored, and it is used as
+ * the luminance: draw with an opaque paint for full brightness and use
+ * {@link android.graphics.Paint#setAlpha(int)} for gray levels. The color
+ * of the paint is ignored.
+ * </p><p>
+ * Show the result with
+ * {@link SmartEyeglassControlUtils#showBitmap(Bitmap)} on
+ * {@link #getBitmap()}, or keep a copy with {@link #toFrame()}.
+ * </p>
+ */
+public class MonochromeCanvas {
+
+    /** */
+    private final Bitmap mBitmap;
+
+    /** */
+    private final Canvas mCanvas;
+
+    /** */
+    private final EightBitMonochromeImageEncoder mEncoder = new EightBitMonochromeImageEncoder();
+
+    /**
+     * Creates a render target, cleared to black.
+     *
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     */
+    public MonochromeCanvas(final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size has illegal value");
+        }
+        mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    /**
+     * @return The canvas that draws into this target.
+     */
+    public Canvas getCanvas() {
+        return mCanvas;
+    }
+
+    /**
+     * @return The ALPHA_8 bitmap that holds the pixels.
+     */
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    /**
+     * @return The width in pixels.
+     */
+    public int getWidth() {
+        return mBitmap.getWidth();
+    }
+
+    /**
+     * @return The height in pixels.
+     */
+    public int getHeight() {
+        return mBitmap.getHeight();
+    }
+
+    /**
+     * Clears the target to black.
+     */
+    public void clear() {
+        mBitmap.eraseColor(0);
+    }
+
+    /**
+     * Copies the pixels into a caller-owned array, without padding between
+     * rows.
+     *
+     * @param reuse The array to write to, or null.
+     * @return The pixels, in {@code reuse} if its length is exactly
+     *         width * height, otherwise in a new array.
+     */
+    public byte[] copyPixels(final byte[] reuse) {
+        return mEncoder.encode(mBitmap, reuse);
+    }
+
+    /**
+     * Copies the pixels into a new frame shown at the default position.
+     *
+     * @return The frame.
+     */
+    public DisplayFrame toFrame() {
+        return new DisplayFrame(copyPixels(null), getWidth(), getHeight());
+    }
+
+    /**
+     * Copies the pixels into a new frame that updates a part of the screen.
+     *
+     * @param x The x position at which to draw.
+     * @param y The y position at which to draw.
+     * @return The frame.
+     */
+    public DisplayFrame toFrame(final int x, final int y) {
+        return new DisplayFrame(copyPixels(null), getWidth(), getHeight(), x, y);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+
+/**
+ * Converts bitmaps to the 8-bit monochrome raw format on several cores.
+ * <p>
+ * The bitmap is split into horizontal row bands of equal height. The calling
+ * thread converts the first band while a bounded pool of worker threads
+ * converts the others, and all of them write into the same output array.
+ * The call returns when every band is done.
+ * </p><p>
+ * Small bitmaps are converted on the calling thread only, and so are
+ * RGB_565 and ALPHA_8 bitmaps, which are converted with a lookup table or
+ * copied as they are. Call {@link #shutdown()}
+ * when the encoder is no longer needed. Instances are not thread safe.
+ * </p>
+ */
+public final class ParallelMonochromeImageEncoder {
+
+    /** The upper limit on the number of threads used for one bitmap. */
+    private static final int MAX_THREAD_COUNT = 4;
+
+    /** Bitmaps with fewer pixels are converted on the calling thread. */
+    private static final int MIN_PARALLEL_PIXEL_COUNT = 16 * 1024;
+
+    /** The worker threads. */
+    private final ExecutorService mExecutor;
+
+    /** One encoder per band, so that each keeps its own scratch buffers. */
+    private final EightBitMonochromeImageEncoder[] mEncoders;
+
+    /** Reused list of pending band results. */
+    private final List<Future<?>> mFutures = new ArrayList<Future<?>>();
+
+    /**
+     * Creates an encoder that uses up to one thread per core, but no more
+     * than four threads.
+     */
+    public ParallelMonochromeImageEncoder() {
+        this(Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREAD_COUNT));
+    }
+
+    /**
+     * Creates an encoder that uses the given number of threads, including
+     * the calling thread.
+     *
+     * @param threadCount The number of threads, at least 1.
+     */
+    public ParallelMonochromeImageEncoder(final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount has illegal value");
+        }
+        mEncoders = new EightBitMonochromeImageEncoder[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            mEncoders[i] = new EightBitMonochromeImageEncoder();
+        }
+        if (threadCount > 1) {
+            mExecutor = Executors.newFixedThreadPool(threadCount - 1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "MonochromeEncoder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            mExecutor = null;
+        }
+    }
+
+    /**
+     * Converts a whole bitmap, reusing the given array when it has the
+     * right length.
+     *
+     * @param bitmap The bitmap, ARGB_8888, RGB_565 or ALPHA_8.
+     * @param reuse  The array to write to, or null.
+     * @return The converted pixels, in {@code reuse} if its length is
+     *         exactly width * height, otherwise in a new array.
+     */
+    public byte[] encode(final Bitmap bitmap, final byte[] reuse) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        int length = width * height;
+        final byte[] result = (reuse != null && reuse.length == length) ? reuse : new byte[length];
+
+        int bandCount = Math.min(mEncoders.length, height);
+        if (mExecutor == null || bandCount < 2 || length < MIN_PARALLEL_PIXEL_COUNT
+                || bitmap.getConfig() != Config.ARGB_8888) {
+            mEncoders[0].encode(bitmap, 0, height, result, 0);
+            return result;
+        }
+
+        int bandHeight = (height + bandCount - 1) / bandCount;
+        mFutures.clear();
+        for (int i = 1; i < bandCount; i++) {
+            final EightBitMonochromeImageEncoder encoder = mEncoders[i];
+            final int rowOffset = i * bandHeight;
+            final int rowCount = Math.min(bandHeight, height - rowOffset);
+            if (rowCount <= 0) {
+                break;
+            }
+            mFutures.add(mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    encoder.encode(bitmap, rowOffset, rowCount, result, rowOffset * width);
+                }
+            }));
+        }
+        try {
+            mEncoders[0].encode(bitmap, 0, bandHeight, result, 0);
+        } finally {
+            awaitBands();
+        }
+        return result;
+    }
+
+    /**
+     * Waits until all submitted bands are converted.
+     */
+    private void awaitBands() {
+        try {
+            for (Future<?> future : mFutures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while encoding");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            mFutures.clear();
+        }
+    }
+
+    /**
+     * Stops the worker threads. The encoder must not be used afterwards.
+     */
+    public void shutdown() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes the run-length encoded raw display format,
+ * {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents#DATA_RAW_FORMAT_RUN_LENGTH}.
+ * <p>
+ * The encoder first reduces the pixels to a number of evenly spaced gray
+ * levels, which makes runs of equal pixels longer, and then packs the
+ * pixels in row order with PackBits. Each packet starts with a header byte
+ * {@code n}:
+ * </p>
+ * <ul>
+ * <li>0 to 127: {@code n + 1} literal pixels follow.</li>
+ * <li>-127 to -1: the next pixel is repeated {@code 1 - n} times.</li>
+ * <li>-128: no operation.</li>
+ * </ul>
+ * <p>
+ * Decoded pixels are 8-bit luminance values, the same as in the plain raw
+ * format. Encoder instances keep a scratch buffer and are not thread safe.
+ * </p>
+ */
+public final class RunLengthImageCodec {
+
+    /** The longest run or literal sequence of one packet. */
+    private static final int MAX_PACKET_LENGTH = 128;
+
+    /** Runs shorter than this are cheaper as literals. */
+    private static final int MIN_RUN_LENGTH = 3;
+
+    /** Maps each 8-bit value to the nearest gray level, as 8-bit value. */
+    private final byte[] mLevels = new byte[256];
+
+    /** */
+    private final int mGrayLevels;
+
+    /** */
+    private byte[] mScratch;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param grayLevels The number of gray levels, from 2 to 256.
+     */
+    public RunLengthImageCodec(final int grayLevels) {
+        if (grayLevels < 2 || grayLevels > 256) {
+            throw new IllegalArgumentException("grayLevels has illegal value");
+        }
+        mGrayLevels = grayLevels;
+        int steps = grayLevels - 1;
+        for (int v = 0; v < 256; v++) {
+            int level = (v * steps + 127) / 255;
+            mLevels[v] = (byte) ((level * 255 + steps / 2) / steps);
+        }
+    }
+
+    /**
+     * @return The number of gray levels.
+     */
+    public int getGrayLevels() {
+        return mGrayLevels;
+    }
+
+    /**
+     * Returns the largest possible encoded size.
+     *
+     * @param pixelCount The number of pixels.
+     * @return The size in bytes.
+     */
+    public static int getMaxEncodedLength(final int pixelCount) {
+        return pixelCount + (pixelCount + MAX_PACKET_LENGTH - 1) / MAX_PACKET_LENGTH;
+    }
+
+    /**
+     * Reduces the gray levels of raw pixels and encodes them.
+     *
+     * @param pixels The raw pixels, one byte per pixel.
+     * @param length The number of pixels.
+     * @return The encoded data.
+     */
+    public byte[] encode(final byte[] pixels, final int length) {
+        int max = getMaxEncodedLength(length);
+        if (mScratch == null || mScratch.length < max) {
+            mScratch = new byte[max];
+        }
+        byte[] out = mScratch;
+        byte[] levels = mLevels;
+        int o = 0;
+        int i = 0;
+        int literalStart = 0;
+
+        while (i < length) {
+            byte value = levels[pixels[i] & 0xff];
+            int run = 1;
+            while (i + run < length && run < MAX_PACKET_LENGTH
+                    && levels[pixels[i + run] & 0xff] == value) {
+                run++;
+            }
+            if (run >= MIN_RUN_LENGTH) {
+                o = writeLiterals(pixels, literalStart, i, out, o);
+                out[o++] = (byte) (1 - run);
+                out[o++] = value;
+                i += run;
+                literalStart = i;
+            } else {
+                i += run;
+            }
+        }
+        o = writeLiterals(pixels, literalStart, length, out, o);
+        return Arrays.copyOf(out, o);
+    }
+
+    /** */
+    private int writeLiterals(final byte[] pixels, final int start, final int end,
+            final byte[] out, final int offset) {
+        int o = offset;
+        for (int i = start; i < end; i += MAX_PACKET_LENGTH) {
+            int count = Math.min(MAX_PACKET_LENGTH, end - i);
+            out[o++] = (byte) (count - 1);
+            for (int j = i, last = i + count; j < last; j++) {
+                out[o++] = mLevels[pixels[j] & 0xff];
+            }
+        }
+        return o;
+    }
+
+    /**
+     * Decodes run-length encoded data.
+     *
+     * @param data       The encoded data.
+     * @param pixelCount The number of pixels, width * height.
+     * @return The raw pixels, one byte per pixel.
+     * @throws IllegalArgumentException If the data is malformed or does not
+     *         hold exactly {@code pixelCount} pixels.
+     */
+    public static byte[] decode(final byte[] data, final int pixelCount) {
+        byte[] pixels = new byte[pixelCount];
+        int o = 0;
+        int i = 0;
+        while (i < data.length) {
+            int header = data[i++];
+            if (header >= 0) {
+                int count = header + 1;
+                if (i + count > data.length || o + count > pixelCount) {
+                    throw new IllegalArgumentException("Malformed run-length data");
+                }
+                System.arraycopy(data, i, pixels, o, count);
+                i += count;
+                o += count;
+            } else if (header != -MAX_PACKET_LENGTH) {
+                int count = 1 - header;
+                if (i >= data.length || o + count > pixelCount) {
+                    throw new IllegalArgumentException("Malformed run-length data");
+                }
+                Arrays.fill(pixels, o, o + count, data[i++]);
+                o += count;
+            }
+        }
+        if (o != pixelCount) {
+            throw new IllegalArgumentException("Run-length data has " + o + " pixels, expected "
+                    + pixelCount);
+        }
+        return pixels;
+    }
+}
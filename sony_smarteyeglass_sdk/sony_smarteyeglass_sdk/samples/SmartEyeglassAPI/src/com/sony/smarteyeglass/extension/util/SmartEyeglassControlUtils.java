@@ -31,34 +31,38 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.sony.smarteyeglass.extension.util;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
-import android.graphics.Color;
 import android.graphics.PointF;
+import android.graphics.Rect;
 import android.location.Location;
 import android.net.LocalServerSocket;
 import android.net.LocalSocket;
 import android.net.LocalSocketAddress;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.Message;
+import android.os.Looper;
 import android.util.DisplayMetrics;
 
 import com.sonyericsson.extras.liveware.aef.control.Control;
+import com.sonyericsson.extras.liveware.extension.util.EncodedImageCache;
+import com.sonyericsson.extras.liveware.extension.util.EncodedImageCache.EncodedImage;
 import com.sonyericsson.extras.liveware.extension.util.ExtensionUtils;
+import com.sonyericsson.extras.liveware.extension.util.control.ControlExtension;
+import com.sonyericsson.extras.liveware.extension.util.io.MalformedPacketException;
+import com.sonyericsson.extras.liveware.extension.util.io.PacketReader;
 import com.sony.smarteyeglass.SmartEyeglassControl;
+import com.sony.smarteyeglass.extension.util.ar.ARObjectBatch;
 import com.sony.smarteyeglass.extension.util.ar.RenderObject;
 import com.sony.smarteyeglass.sdk.R;
 
@@ -150,6 +154,44 @@ import com.sony.smarteyeglass.sdk.R;
  */
 public class SmartEyeglassControlUtils extends BroadcastReceiver {
 
+    /**
+     * Camera buffer mode where every frame gets a new array of exactly the
+     * picture length. This is the default.
+     */
+    public static final int CAMERA_BUFFER_MODE_NONE = 0;
+
+    /**
+     * Camera buffer mode where frames are read into pooled buffers, and each
+     * buffer is handed back to the pool as soon as
+     * {@link SmartEyeglassEventListener#onCameraReceived(CameraEvent)} returns.
+     */
+    public static final int CAMERA_BUFFER_MODE_AUTO_RECYCLE = 1;
+
+    /**
+     * Camera buffer mode where frames are read into pooled buffers, and the
+     * listener hands each buffer back by calling {@link CameraEvent#release()}.
+     */
+    public static final int CAMERA_BUFFER_MODE_EXPLICIT_RELEASE = 2;
+
+    /**
+     * Camera delivery policy where every received frame is delivered, in
+     * order. This is the default.
+     */
+    public static final int CAMERA_DELIVERY_ALL = 0;
+
+    /**
+     * Camera delivery policy where only the newest received frame is
+     * delivered. Older frames not delivered yet are dropped.
+     */
+    public static final int CAMERA_DELIVERY_LATEST = 1;
+
+    /**
+     * Camera delivery policy where up to a given number of frames wait for
+     * delivery, and the oldest waiting frame is dropped when a new one
+     * arrives at a full queue.
+     */
+    public static final int CAMERA_DELIVERY_BOUNDED = 2;
+
     private final int INVALID_DISP_OFFSET = -1;
 
     private final int INVALID_CAMERA_MODE = -1;
@@ -164,6 +206,21 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
 
     private final int PNG_COMPLESS_QUALITY = 100;
 
+    /** The buffer size for reading camera data. */
+    private static final int CAMERA_BUFFER_SIZE = 64 * 1024;
+
+    /** The largest accepted camera frame, well above a 3M JPEG. */
+    private static final int MAX_CAMERA_DATA_SIZE = 8 * 1024 * 1024;
+
+    /** The queue size used for {@link #CAMERA_DELIVERY_BOUNDED} by default. */
+    private static final int DEFAULT_CAMERA_QUEUE_SIZE = 4;
+
+    /** The API version that supports run-length encoded display data. */
+    private final int RUN_LENGTH_API_VERSION = 4;
+
+    /** The API version that supports batch AR object operations. */
+    private final int AR_BATCH_API_VERSION = 4;
+
     /**
      * supported camera mode.
      */
@@ -231,6 +288,56 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
     private final SmartEyeglassEventListener mGeneralEventListener;
     private int mSetApiVersion = 0;
 
+    /**
+     * The highest API version supported by the host application, or 0 as
+     * long as the host has not reported it. Hosts older than version 4
+     * never report it.
+     */
+    private int mHostApiVersion = 0;
+
+    /**
+     * Tracks the last frame for differential display updates, or null if
+     * differential updates are disabled.
+     */
+    private DirtyRegionTracker mDirtyRegionTracker;
+
+    /** Converts bitmaps to the raw display format. */
+    private final EightBitMonochromeImageEncoder mEncoder = new EightBitMonochromeImageEncoder();
+
+    /** The flow-controlled display queue attached to this instance, or null. */
+    private DisplaySubmissionQueue mSubmissionQueue;
+
+    /** Encodes display data in the run-length raw format, or null. */
+    private RunLengthImageCodec mRunLengthCodec;
+
+    /** True if display frames are converted on several cores. */
+    private boolean mParallelEncoding;
+
+    /** The multi-core encoder, created on first use. */
+    private ParallelMonochromeImageEncoder mParallelEncoder;
+
+    /**
+     * The last raw display buffer, reused for frames of the same size. The
+     * intent extras are copied when the broadcast is sent, so the buffer is
+     * free again once {@link #sendToHostApp(Intent)} returns.
+     */
+    private byte[] mDisplayBuffer;
+
+    /** Follows the display state and paces full-screen frames. */
+    private final DisplayGovernor mDisplayGovernor;
+
+    /** True if display updates go through {@link #mDisplayGovernor}. */
+    private boolean mDisplayGovernorEnabled;
+
+    /** The PNG data of AR animation frames sent before. */
+    private final ARFrameCache mARFrameCache =
+            new ARFrameCache(ARFrameCache.DEFAULT_MAX_SIZE, PNG_COMPLESS_QUALITY);
+
+    static {
+        // Controls on SmartEyeglass hosts show bitmaps in the raw format.
+        ControlExtension.setHostImageEncoderFactory(SmartEyeglassImageEncoder.FACTORY);
+    }
+
     /**
      * Creates an instance of this class.
      *
@@ -243,6 +350,12 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             SmartEyeglassEventListener eventListener) {
         mHostAppPackageName = hostAppPackageName;
         mHandler = new Handler();
+        mDisplayGovernor = new DisplayGovernor(new DisplayGovernor.FrameSink() {
+            @Override
+            public void sendFrame(final Bitmap bitmap) {
+                sendFullScreenDisplayData(bitmap);
+            }
+        });
 
         if (eventListener != null) {
             mGeneralEventListener = eventListener;
@@ -286,6 +399,7 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         filter.addAction(SmartEyeglassControl.Intents.CONTROL_DISPLAY_NOTIFY_STATUS_EVENT_INTENT);
         filter.addAction(SmartEyeglassControl.Intents.CONTROL_DISPLAY_DATA_RESULT_INTENT);
         filter.addAction(SmartEyeglassControl.Intents.CONTROL_AR_ANIMATION_RESULT_INTENT);
+        filter.addAction(SmartEyeglassControl.Intents.CONTROL_API_VERSION_NOTIFY_INTENT);
         context.registerReceiver(this, filter);
 
         sendConfirmApiVersion(context);
@@ -304,6 +418,15 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         }
         mContext.unregisterReceiver(this);
         mContext = null;
+        invalidateDifferentialFrame();
+        releaseParallelEncoder();
+        mDisplayGovernor.clear();
+        if (mSubmissionQueue != null) {
+            mSubmissionQueue.clear();
+        }
+        closeSocket();
+        closeLocalServer();
+        mARFrameCache.clear();
     }
 
     private class IntentRunner implements Runnable {
@@ -323,12 +446,19 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             @Override
             public void run() {
                 String action = mIntent.getAction();
-                if (action == SmartEyeglassControl.Intents.CONTROL_VOICE_TEXT_INPUT_NOTIFY_RECOGNIZED_TEXT_EVENT_INTENT) {
+                if (action == SmartEyeglassControl.Intents.CONTROL_API_VERSION_NOTIFY_INTENT) {
+                    mHostApiVersion = mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_VERSION_DATA, 0);
+                } else if (action == SmartEyeglassControl.Intents.CONTROL_VOICE_TEXT_INPUT_NOTIFY_RECOGNIZED_TEXT_EVENT_INTENT) {
                     mGeneralEventListener.onVoiceTextInput(mIntent.getIntExtra(Control.Intents.EXTRA_ERROR_CODE, -1),
                             mIntent.getStringExtra(Control.Intents.EXTRA_TEXT));
                 } else if (action == SmartEyeglassControl.Intents.CONTROL_POWER_MODE_NOTIFY_MODE_EVENT_INTENT) {
+                    mDisplayGovernor.setPowerMode(mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_POWER_MODE,
+                            SmartEyeglassControl.Intents.POWER_MODE_NORMAL));
                     mGeneralEventListener.onChangePowerMode(mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_POWER_MODE, -1));
                 } else if (action == SmartEyeglassControl.Intents.CONTROL_DISPLAY_NOTIFY_STATUS_EVENT_INTENT) {
+                    invalidateDifferentialFrame();
+                    mDisplayGovernor.setDisplayStatus(mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_DISPLAY_STATUS,
+                            SmartEyeglassControl.Intents.DISPLAY_STATUS_ON));
                     mGeneralEventListener.onDisplayStatus(mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_DISPLAY_STATUS, -1));
                 } else if (action == SmartEyeglassControl.Intents.CONTROL_DIALOG_CLOSED_EVENT_INTENT) {
                     mGeneralEventListener.onDialogClosed(mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_DIALOG_SELECTED_BUTTON_INDEX, -1));
@@ -349,6 +479,8 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
                                 SmartEyeglassControl.Intents.STANDBY_CONFIRMED_RESULT_NG);
                     sendToHostApp(intent);
                 } else if (action == SmartEyeglassControl.Intents.CONTROL_STANDBY_NOTIFY_CONDITION_EVENT_INTENT) {
+                    mDisplayGovernor.setStandbyStatus(mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_STANDBY_CONDITION,
+                            SmartEyeglassControl.Intents.STANDBY_MODE_OFF));
                     mGeneralEventListener.onStandbyStatus(mIntent.getIntExtra(SmartEyeglassControl.Intents.EXTRA_STANDBY_CONDITION, -1));
                 } else if (action == SmartEyeglassControl.Intents.CONTROL_AR_GET_OBJECT_REQUEST_INTENT) {
                     mGeneralEventListener.onARObjectRequest(
@@ -383,6 +515,9 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
                             SmartEyeglassControl.Intents.DISPLAY_DATA_TYPE_SHOW_BITMAP);
 
                     if (type == SmartEyeglassControl.Intents.DISPLAY_DATA_TYPE_SHOW_BITMAP) {
+                        if (mSubmissionQueue != null) {
+                            mSubmissionQueue.onResult(transaction);
+                        }
                         mGeneralEventListener.onResultShowBitmap(transaction, result);
                     } else if (type == SmartEyeglassControl.Intents.DISPLAY_DATA_TYPE_SHOW_IMAGE) {
                         mGeneralEventListener.onResultShowImage(transaction, result);
@@ -437,9 +572,25 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         mSetApiVersion = version;
     }
 
+    /**
+     * Returns the highest SmartEyeglass API version the host application
+     * reported, see
+     * {@link SmartEyeglassControl.Intents#CONTROL_API_VERSION_NOTIFY_INTENT}.
+     * Features of newer API versions are only used when the host reported
+     * them.
+     *
+     * @return The host API version, or 0 if the host has not reported one.
+     */
+    public int getHostApiVersion() {
+        return mHostApiVersion;
+    }
+
     /**
      * Displays an image resource on the SmartEyeglass screen.
      * Display can take some time for a large image.
+     * The converted image is kept in the shared
+     * {@link com.sonyericsson.extras.liveware.extension.util.EncodedImageCache},
+     * so showing the same resource again only sends it.
      *
      * <p>If an image is larger than the screen size, it is not displayed on the screen.<br>
      * For screen size refer to
@@ -453,10 +604,11 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             Dbg.d("showImage: " + resourceId);
         }
 
-        Bitmap bitmap = BitmapFactory.decodeResource(mContext.getResources(), resourceId,
-                mBitmapOptions);
-
-        sendDisplayData(bitmap, INVALID_DISP_OFFSET, INVALID_DISP_OFFSET);
+        EncodedImage image = getEncodedImage(resourceId);
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
+        sendRawDisplayData(image.getData(), image.getWidth(), image.getHeight(),
+                INVALID_DISP_OFFSET, INVALID_DISP_OFFSET);
     }
 
     /**
@@ -477,16 +629,40 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             Dbg.d("showImageWithCallback: " + resourceId);
         }
 
-        Bitmap bitmap = BitmapFactory.decodeResource(mContext.getResources(), resourceId,
-                mBitmapOptions);
-
-        sendDisplayDataWithCallback(bitmap, INVALID_DISP_OFFSET, INVALID_DISP_OFFSET,
+        EncodedImage image = getEncodedImage(resourceId);
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
+        sendRawDisplayDataWithCallback(image.getData(), image.getWidth(), image.getHeight(),
+                INVALID_DISP_OFFSET, INVALID_DISP_OFFSET,
                 transactionNumber, SmartEyeglassControl.Intents.DISPLAY_DATA_TYPE_SHOW_IMAGE);
     }
 
+    /**
+     * Returns an image resource in the raw display format, from the shared
+     * {@link EncodedImageCache} if it was converted before.
+     */
+    private EncodedImage getEncodedImage(final int resourceId) {
+        EncodedImageCache cache = EncodedImageCache.getInstance();
+        String variant = EncodedImageCache.getVariant(mContext.getResources(), mBitmapOptions);
+        EncodedImage image = cache.get(resourceId, EncodedImageCache.FORMAT_RAW_MONOCHROME, variant);
+        if (image == null) {
+            Bitmap bitmap = BitmapFactory.decodeResource(mContext.getResources(), resourceId,
+                    mBitmapOptions);
+            checkDisplaySize(bitmap);
+            // a new array, the cached data must not share the reused display buffer
+            image = new EncodedImage(mEncoder.encode(bitmap, null), bitmap.getWidth(), bitmap.getHeight());
+            cache.put(resourceId, EncodedImageCache.FORMAT_RAW_MONOCHROME, variant, image);
+        }
+        return image;
+    }
+
      /**
      * Displays a bitmap on the SmartEyeglass screen.
      * Display can take some time for a large image.
+     * ALPHA_8 bitmaps, such as the one behind a {@link MonochromeCanvas},
+     * are sent without color conversion.
+     * With the display governor enabled, the bitmap may be sent later, see
+     * {@link #setDisplayGovernorEnabled(boolean)}.
      *
      * <p>If an image is larger than the screen size, it is not displayed on the screen.<br>
      * For screen size refer to
@@ -501,7 +677,22 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             Dbg.d("showBitmap");
         }
 
-        sendDisplayData(bitmap, INVALID_DISP_OFFSET, INVALID_DISP_OFFSET);
+        if (mDisplayGovernorEnabled) {
+            checkDisplaySize(bitmap);
+            mDisplayGovernor.submit(bitmap);
+        } else {
+            sendFullScreenDisplayData(bitmap);
+        }
+    }
+
+    /** */
+    private void sendFullScreenDisplayData(final Bitmap bitmap) {
+        if (mDirtyRegionTracker != null && bitmap.getWidth() == getDisplayWidth()
+                && bitmap.getHeight() == getDisplayHeight()) {
+            sendDifferentialDisplayData(bitmap);
+        } else {
+            sendDisplayData(bitmap, INVALID_DISP_OFFSET, INVALID_DISP_OFFSET);
+        }
     }
 
     /**
@@ -523,6 +714,9 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             Dbg.v("showBitmap x: " + x + " y: " + y);
         }
 
+        if (mDisplayGovernorEnabled && !mDisplayGovernor.admitUpdate()) {
+            return;
+        }
         sendDisplayData(bitmap, x, y);
     }
 
@@ -542,6 +736,7 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (Dbg.DEBUG) {
             Dbg.v("showBitmapWithCallback");
         }
+        cancelPendingBitmap();
         sendDisplayDataWithCallback(bitmap, INVALID_DISP_OFFSET, INVALID_DISP_OFFSET, transactionNumber,
                 SmartEyeglassControl.Intents.DISPLAY_DATA_TYPE_SHOW_BITMAP);
     }
@@ -565,70 +760,387 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (Dbg.DEBUG) {
             Dbg.v("showBitmapWithCallback x: " + x + " y: " + y);
         }
+        cancelPendingBitmap();
         sendDisplayDataWithCallback(bitmap, x, y, transactionNumber,
                 SmartEyeglassControl.Intents.DISPLAY_DATA_TYPE_SHOW_BITMAP);
     }
 
+    /**
+     * Displays a frame that is already in the SmartEyeglass raw format.
+     * No conversion is done, so this is the fastest way to show a screen
+     * that is shown many times.
+     * <p>If a frame is larger than the screen size, it is not displayed on the screen.<br>
+     * For screen size refer to
+     * {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents#EXTRA_IMAGE_HEIGHT},
+     * {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents#EXTRA_IMAGE_WIDTH}
+     * </p>
+     *
+     * @param frame The frame to show, at its own position.
+     */
+    public void showFrame(final DisplayFrame frame) {
+        if (frame == null) {
+            throw new IllegalArgumentException("frame has illegal value");
+        }
+        if (Dbg.DEBUG) {
+            Dbg.v("showFrame x: " + frame.getX() + " y: " + frame.getY());
+        }
+        checkDisplaySize(frame.getWidth(), frame.getHeight());
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
+        sendRawDisplayData(frame.getData(), frame.getWidth(), frame.getHeight(),
+                frame.getX(), frame.getY());
+    }
+
+    /**
+    * Displays a frame that is already in the SmartEyeglass raw format. Returns the result in
+    * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onResultShowBitmap}
+    * when the operation is completed.
+    * <p>If a frame is larger than the screen size, it is not displayed on the screen.<br>
+    * For screen size refer to
+    * {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents#EXTRA_IMAGE_HEIGHT},
+    * {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents#EXTRA_IMAGE_WIDTH}
+    * </p>
+    * @param frame The frame to show, at its own position.
+    * @param transactionNumber The transaction number.
+    */
+    public void showFrameWithCallback(final DisplayFrame frame, final int transactionNumber) {
+        if (frame == null) {
+            throw new IllegalArgumentException("frame has illegal value");
+        }
+        if (Dbg.DEBUG) {
+            Dbg.v("showFrameWithCallback x: " + frame.getX() + " y: " + frame.getY());
+        }
+        checkDisplaySize(frame.getWidth(), frame.getHeight());
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
+        sendRawDisplayDataWithCallback(frame.getData(), frame.getWidth(), frame.getHeight(),
+                frame.getX(), frame.getY(), transactionNumber,
+                SmartEyeglassControl.Intents.DISPLAY_DATA_TYPE_SHOW_BITMAP);
+    }
+
     /** */
     private void sendDisplayData(final Bitmap bitmap, final int x, final int y) {
+        checkDisplaySize(bitmap);
+        invalidateDifferentialFrame();
 
-        // image size check
-        if ((bitmap.getHeight() * bitmap.getWidth()) > IMAGE_PIXEL_SIZE_MAX) {
-            throw new IllegalArgumentException("Images that are trying to display too large");
+        byte[] buffer = encodeDisplayData(bitmap);
+        sendRawDisplayData(buffer, bitmap.getWidth(), bitmap.getHeight(), x, y);
+    }
+
+    /** */
+    private void sendDisplayDataWithCallback(final Bitmap bitmap,
+            final int x, final int y, final int transactionNumber, final int displayDataType) {
+        checkDisplaySize(bitmap);
+        invalidateDifferentialFrame();
+
+        byte[] buffer = encodeDisplayData(bitmap);
+        sendRawDisplayDataWithCallback(buffer, bitmap.getWidth(), bitmap.getHeight(), x, y,
+                transactionNumber, displayDataType);
+    }
+
+    /**
+     * Sends a full-screen bitmap, transmitting only the regions that changed
+     * since the previous differential frame.
+     */
+    private void sendDifferentialDisplayData(final Bitmap bitmap) {
+        checkDisplaySize(bitmap);
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        byte[] buffer = encodeDisplayData(bitmap);
+        List<Rect> regions = mDirtyRegionTracker.update(buffer, width, height);
+        if (regions == null) {
+            sendRawDisplayData(buffer, width, height, INVALID_DISP_OFFSET, INVALID_DISP_OFFSET);
+            return;
         }
-        if (bitmap.getHeight() > mContext.getResources().getDimension(R.dimen.smarteyeglass_control_height)
-                || bitmap.getWidth() > mContext.getResources().getDimension(R.dimen.smarteyeglass_control_width)) {
-            throw new IllegalArgumentException("Images that are trying to display too large");
+
+        if (Dbg.DEBUG) {
+            Dbg.v("showBitmap differential regions: " + regions.size());
+        }
+        for (Rect region : regions) {
+            sendRawDisplayData(DirtyRegionTracker.crop(buffer, width, region),
+                    region.width(), region.height(), region.left, region.top);
+        }
+    }
+
+    /**
+     * Converts a bitmap to the raw display format. The returned array is
+     * reused by the next call, so it must be sent before that.
+     */
+    private byte[] encodeDisplayData(final Bitmap bitmap) {
+        if (mParallelEncoding) {
+            if (mParallelEncoder == null) {
+                mParallelEncoder = new ParallelMonochromeImageEncoder();
+            }
+            mDisplayBuffer = mParallelEncoder.encode(bitmap, mDisplayBuffer);
+        } else {
+            mDisplayBuffer = mEncoder.encode(bitmap, mDisplayBuffer);
+        }
+        return mDisplayBuffer;
+    }
+
+    /**
+     * Enables the compact run-length encoded display data format.
+     * <p>
+     * Display data is reduced to the given number of evenly spaced gray
+     * levels and run-length encoded, see {@link RunLengthImageCodec}.
+     * Mostly black frames shrink to a small fraction of their raw size.
+     * Frames that would not get smaller are sent in the plain raw format.
+     * </p><p>
+     * The format needs API version 4 on the host. Until the host reports
+     * that version, see {@link #getHostApiVersion()}, display data is sent
+     * in the plain raw format, so enabling it is safe on older hosts.
+     * </p>
+     *
+     * @param grayLevels The number of gray levels, from 2 to 256.
+     */
+    public void enableCompressedDisplayData(final int grayLevels) {
+        mRunLengthCodec = new RunLengthImageCodec(grayLevels);
+    }
+
+    /**
+     * Disables the run-length encoded display data format. This is the
+     * default.
+     */
+    public void disableCompressedDisplayData() {
+        mRunLengthCodec = null;
+    }
+
+    /**
+     * Attaches a flow-controlled display queue, which is then told about
+     * display results.
+     *
+     * @param queue The queue.
+     */
+    void setDisplaySubmissionQueue(final DisplaySubmissionQueue queue) {
+        mSubmissionQueue = queue;
+    }
+
+    /**
+     * Enables or disables conversion of display bitmaps on several cores.
+     * <p>
+     * When enabled, large bitmaps passed to the show and layer transition
+     * methods are split into row bands that are converted concurrently on a
+     * small pool of worker threads. The calling thread still waits for the
+     * conversion to finish. The worker threads are stopped by
+     * {@link #deactivate()} or when parallel conversion is disabled.
+     * </p>
+     *
+     * @param enabled True to convert on several cores.
+     */
+    public void setParallelEncodingEnabled(final boolean enabled) {
+        mParallelEncoding = enabled;
+        if (!enabled) {
+            releaseParallelEncoder();
+        }
+    }
+
+    /** */
+    private void releaseParallelEncoder() {
+        if (mParallelEncoder != null) {
+            mParallelEncoder.shutdown();
+            mParallelEncoder = null;
         }
+    }
 
-        byte[] buffer = EightBitMonochromeImageEncoder.convert(bitmap, 0, bitmap.getHeight());
+    /** */
+    private void sendRawDisplayData(final byte[] buffer, final int width, final int height,
+            final int x, final int y) {
+        sendToHostApp(createDisplayDataIntent(buffer, width, height, x, y));
+    }
+
+    /** */
+    private void sendRawDisplayDataWithCallback(final byte[] buffer, final int width,
+            final int height, final int x, final int y, final int transactionNumber,
+            final int displayDataType) {
+        Intent intent = createDisplayDataIntent(buffer, width, height, x, y);
+        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DISPLAY_DATA_TRANSACTION_NUMBER, transactionNumber);
+        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DISPLAY_DATA_TYPE, displayDataType);
+
+        sendToHostApp(intent);
+    }
 
+    /** */
+    private Intent createDisplayDataIntent(final byte[] buffer, final int width, final int height,
+            final int x, final int y) {
         Intent intent = new Intent(Control.Intents.CONTROL_DISPLAY_DATA_INTENT);
-        intent.putExtra(Control.Intents.EXTRA_DATA, buffer);
         // since raw format then other side do not know width or height
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_HEIGHT, bitmap.getHeight());
+        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_HEIGHT, height);
         // since raw format then other side do not know width or height
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_WIDTH, bitmap.getWidth());
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DATA_IS_RAW_FORMAT, 1);    // SmartEyeglass raw format
+        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_WIDTH, width);
+
+        byte[] encoded = null;
+        if (mRunLengthCodec != null && mHostApiVersion >= RUN_LENGTH_API_VERSION) {
+            encoded = mRunLengthCodec.encode(buffer, width * height);
+        }
+        if (encoded != null && encoded.length < width * height) {
+            intent.putExtra(Control.Intents.EXTRA_DATA, encoded);
+            intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DATA_IS_RAW_FORMAT,
+                    SmartEyeglassControl.Intents.DATA_RAW_FORMAT_RUN_LENGTH);
+        } else {
+            intent.putExtra(Control.Intents.EXTRA_DATA, buffer);
+            intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DATA_IS_RAW_FORMAT, 1);    // SmartEyeglass raw format
+        }
 
         if (x != INVALID_DISP_OFFSET && y != INVALID_DISP_OFFSET) {
             intent.putExtra(Control.Intents.EXTRA_X_OFFSET, x);
             intent.putExtra(Control.Intents.EXTRA_Y_OFFSET, y);
         }
+        return intent;
+    }
 
-        sendToHostApp(intent);
+    /** */
+    private void checkDisplaySize(final Bitmap bitmap) {
+        checkDisplaySize(bitmap.getWidth(), bitmap.getHeight());
     }
 
     /** */
-    private void sendDisplayDataWithCallback(final Bitmap bitmap, 
-            final int x, final int y, final int transactionNumber, final int displayDataType) {
+    private void checkDisplaySize(final int width, final int height) {
         // image size check
-        if ((bitmap.getHeight() * bitmap.getWidth()) > IMAGE_PIXEL_SIZE_MAX) {
+        if ((height * width) > IMAGE_PIXEL_SIZE_MAX) {
             throw new IllegalArgumentException("Images that are trying to display too large");
         }
-        if (bitmap.getHeight() > mContext.getResources().getDimension(R.dimen.smarteyeglass_control_height)
-                || bitmap.getWidth() > mContext.getResources().getDimension(R.dimen.smarteyeglass_control_width)) {
+        if (height > getDisplayHeight() || width > getDisplayWidth()) {
             throw new IllegalArgumentException("Images that are trying to display too large");
         }
+    }
 
-        byte[] buffer = EightBitMonochromeImageEncoder.convert(bitmap, 0, bitmap.getHeight());
+    /** */
+    private int getDisplayWidth() {
+        return (int) mContext.getResources().getDimension(R.dimen.smarteyeglass_control_width);
+    }
 
-        Intent intent = new Intent(Control.Intents.CONTROL_DISPLAY_DATA_INTENT);
-        intent.putExtra(Control.Intents.EXTRA_DATA, buffer);
-        // since raw format then other side do not know width or height
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_HEIGHT, bitmap.getHeight());
-        // since raw format then other side do not know width or height
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_WIDTH, bitmap.getWidth());
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DATA_IS_RAW_FORMAT, 1);    // SmartEyeglass raw format
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DISPLAY_DATA_TRANSACTION_NUMBER, transactionNumber);
-        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DISPLAY_DATA_TYPE, displayDataType);
+    /** */
+    private int getDisplayHeight() {
+        return (int) mContext.getResources().getDimension(R.dimen.smarteyeglass_control_height);
+    }
 
-        if (x != INVALID_DISP_OFFSET && y != INVALID_DISP_OFFSET) {
-            intent.putExtra(Control.Intents.EXTRA_X_OFFSET, x);
-            intent.putExtra(Control.Intents.EXTRA_Y_OFFSET, y);
+    /**
+     * Enables or disables differential display updates for
+     * {@link #showBitmap(Bitmap)}.
+     * <p>
+     * When enabled, the last full-screen bitmap shown is remembered, and the
+     * next one is compared with it tile by tile. Only the changed rectangles are
+     * sent to the SmartEyeglass, using partial updates. If most of the screen
+     * changed, the whole bitmap is sent as usual. Bitmaps that do not cover the
+     * whole screen are always sent in full.
+     * </p><p>
+     * Any other display operation, such as showing a layout, a dialog, or a
+     * bitmap at an offset, makes the next differential update a full one.
+     * Call {@link #invalidateDifferentialFrame()} if the screen content may
+     * have changed by other means.
+     * </p>
+     *
+     * @param enabled True to enable differential updates, false to always send
+     *        full frames.
+     */
+    public void setDifferentialDisplayEnabled(final boolean enabled) {
+        if (enabled) {
+            if (mDirtyRegionTracker == null) {
+                mDirtyRegionTracker = new DirtyRegionTracker();
+            }
+        } else {
+            mDirtyRegionTracker = null;
         }
+    }
 
-        sendToHostApp(intent);
+    /**
+     * Checks whether differential display updates are enabled.
+     *
+     * @return True if enabled.
+     * @see #setDifferentialDisplayEnabled(boolean)
+     */
+    public boolean isDifferentialDisplayEnabled() {
+        return mDirtyRegionTracker != null;
+    }
+
+    /**
+     * Forgets the last frame used for differential display updates, so that
+     * the next call to {@link #showBitmap(Bitmap)} sends the whole bitmap.
+     */
+    public void invalidateDifferentialFrame() {
+        if (mDirtyRegionTracker != null) {
+            mDirtyRegionTracker.invalidate();
+        }
+    }
+
+    /**
+     * Enables or disables the display governor.
+     * <p>
+     * The governor follows the display status, standby status and power mode
+     * reported by the host application. While the display is off or in
+     * standby, {@link #showBitmap(Bitmap)} keeps only the latest bitmap and
+     * sends it once the display is back on. Partial updates with
+     * {@link #showBitmap(Bitmap, int, int)} and AR animation frames are
+     * dropped in that time, so apps using them should redraw in
+     * {@link SmartEyeglassEventListener#onDisplayStatus(int)}.
+     * In normal power mode, {@link #showBitmap(Bitmap)} sends at most one
+     * frame per normal power frame interval, and a newer bitmap replaces one
+     * that is still waiting.
+     * </p><p>
+     * A waiting bitmap is kept by reference, so it must not be recycled
+     * until a newer one is shown. Operations that report a result, such as
+     * {@link #showBitmapWithCallback(Bitmap, int)} and
+     * {@link #sendARAnimationObjectWithCallback(int, Bitmap, int)}, are not
+     * affected. Other display operations of this class drop the waiting
+     * bitmap, see {@link #cancelPendingBitmap()}.
+     * The governor is disabled by default.
+     * </p>
+     *
+     * @param enabled True to enable the governor.
+     * @see #setNormalPowerFrameInterval(long)
+     */
+    public void setDisplayGovernorEnabled(final boolean enabled) {
+        mDisplayGovernorEnabled = enabled;
+        if (!enabled) {
+            mDisplayGovernor.clear();
+        }
+    }
+
+    /**
+     * Drops a bitmap that the display governor still holds back, so that it
+     * is not sent over newer content later. The display operations of this
+     * class call it before showing other content. Call it before showing a
+     * layout with {@code ControlExtension.showLayout()} while the governor
+     * is enabled.
+     */
+    public void cancelPendingBitmap() {
+        mDisplayGovernor.clear();
+    }
+
+    /**
+     * Sets the minimum time between frames sent by
+     * {@link #showBitmap(Bitmap)} in normal power mode when the display
+     * governor is enabled. The default is 100 milliseconds.
+     *
+     * @param interval The interval in milliseconds, 0 for no limit.
+     */
+    public void setNormalPowerFrameInterval(final long interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval has illegal value");
+        }
+        mDisplayGovernor.setNormalPowerFrameInterval(interval);
+    }
+
+    /**
+     * Checks whether the SmartEyeglass display can currently not be seen,
+     * because it is off or in standby. Apps can use this to skip rendering
+     * work, such as drawing camera frames.
+     *
+     * @return True if the display is off or in standby.
+     */
+    public boolean isDisplaySuspended() {
+        return mDisplayGovernor.isSuspended();
+    }
+
+    /**
+     * Returns the number of display updates and AR animation frames the
+     * display governor dropped, or replaced with a newer frame.
+     *
+     * @return The skipped frame count.
+     */
+    public int getSkippedDisplayFrameCount() {
+        return mDisplayGovernor.getSkippedFrameCount();
     }
 
     /**
@@ -647,6 +1159,7 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         }
 
         if (mRecodingMode != SmartEyeglassControl.Intents.CAMERA_MODE_STILL_TO_FILE) {
+            mCameraStreamStats.reset();
             openSocket();
         }
 
@@ -673,16 +1186,227 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
 
     /**
      * Terminates camera operation on the SmartEyeglass device.
+     * <p>
+     * The socket receiving the camera data stays open so that the next
+     * {@link #startCamera()} does not have to create it again. It is closed
+     * by {@link #deactivate()}.
+     * </p>
      */
     public void stopCamera() {
         if (mRecodingMode != SmartEyeglassControl.Intents.CAMERA_MODE_STILL_TO_FILE) {
-            closeSocket();
+            disarmSocket();
         }
 
         Intent intent = new Intent(SmartEyeglassControl.Intents.CONTROL_CAMERA_STOP_INTENT);
         sendToHostApp(intent);
     }
 
+    /**
+     * Sets how the buffers holding received camera frames are managed.
+     * <p>
+     * By default every frame is read into a new array, which becomes garbage
+     * once the app is done with it. In the pooled modes, frames are read into
+     * buffers from a {@link CameraFramePool}, which can be longer than the
+     * picture; use {@link CameraEvent#getDataLength()} and
+     * {@link CameraEvent#getDataBuffer()}, since {@link CameraEvent#getData()}
+     * copies the picture out of the buffer. In
+     * {@link #CAMERA_BUFFER_MODE_AUTO_RECYCLE} the listener must not keep the
+     * data after {@link SmartEyeglassEventListener#onCameraReceived(CameraEvent)}
+     * returns. In {@link #CAMERA_BUFFER_MODE_EXPLICIT_RELEASE} the app may
+     * hand the event to another thread, and must call
+     * {@link CameraEvent#release()} when done; events that are never released
+     * are simply garbage collected.
+     * </p>
+     *
+     * @param mode The buffer mode. One of:
+     *            <ul>
+     *            <li> {@link #CAMERA_BUFFER_MODE_NONE}</li>
+     *            <li> {@link #CAMERA_BUFFER_MODE_AUTO_RECYCLE}</li>
+     *            <li> {@link #CAMERA_BUFFER_MODE_EXPLICIT_RELEASE}</li>
+     *            </ul>
+     */
+    public void setCameraBufferMode(final int mode) {
+        if (mode != CAMERA_BUFFER_MODE_NONE && mode != CAMERA_BUFFER_MODE_AUTO_RECYCLE
+                && mode != CAMERA_BUFFER_MODE_EXPLICIT_RELEASE) {
+            throw new IllegalArgumentException("mode has illegal value");
+        }
+        if (mode != CAMERA_BUFFER_MODE_NONE && mCameraFramePool == null) {
+            mCameraFramePool = new CameraFramePool();
+        }
+        mCameraBufferMode = mode;
+    }
+
+    /**
+     * Sets how received camera frames are delivered when
+     * {@link SmartEyeglassEventListener#onCameraReceived(CameraEvent)} cannot
+     * keep up with the camera stream.
+     * <p>
+     * Frames are delivered one at a time on the thread that created this
+     * instance. With {@link #CAMERA_DELIVERY_ALL} every frame is delivered,
+     * and frames wait as long as needed. For live preview, where a fresh
+     * frame matters more than a complete sequence, use
+     * {@link #CAMERA_DELIVERY_LATEST}. Dropped frames are counted, see
+     * {@link #getDroppedCameraEventCount()}, and their pooled buffers are
+     * handed back.
+     * </p>
+     *
+     * @param policy The delivery policy. One of:
+     *            <ul>
+     *            <li> {@link #CAMERA_DELIVERY_ALL}</li>
+     *            <li> {@link #CAMERA_DELIVERY_LATEST}</li>
+     *            <li> {@link #CAMERA_DELIVERY_BOUNDED}, which waits for at most 4 frames</li>
+     *            </ul>
+     */
+    public void setCameraDeliveryPolicy(final int policy) {
+        setCameraDeliveryPolicy(policy, DEFAULT_CAMERA_QUEUE_SIZE);
+    }
+
+    /**
+     * Sets how received camera frames are delivered, see
+     * {@link #setCameraDeliveryPolicy(int)}.
+     *
+     * @param policy    The delivery policy.
+     * @param queueSize The maximum number of waiting frames for
+     *                  {@link #CAMERA_DELIVERY_BOUNDED}. Ignored for the other
+     *                  policies.
+     */
+    public void setCameraDeliveryPolicy(final int policy, final int queueSize) {
+        mCameraDispatcher.setCapacity(getCameraQueueCapacity(policy, queueSize));
+    }
+
+    /** Returns the dispatcher queue capacity for a delivery policy. */
+    private static int getCameraQueueCapacity(final int policy, final int queueSize) {
+        if (policy == CAMERA_DELIVERY_ALL) {
+            return 0;
+        } else if (policy == CAMERA_DELIVERY_LATEST) {
+            return 1;
+        } else if (policy == CAMERA_DELIVERY_BOUNDED) {
+            if (queueSize < 1) {
+                throw new IllegalArgumentException("queueSize has illegal value");
+            }
+            return queueSize;
+        }
+        throw new IllegalArgumentException("policy has illegal value");
+    }
+
+    /**
+     * Returns the number of camera frames delivered to
+     * {@link SmartEyeglassEventListener#onCameraReceived(CameraEvent)}.
+     *
+     * @return The delivered frame count.
+     */
+    public int getDeliveredCameraEventCount() {
+        return mCameraDispatcher.getDeliveredCount();
+    }
+
+    /**
+     * Returns the number of camera frames dropped by the delivery policy.
+     *
+     * @return The dropped frame count.
+     */
+    public int getDroppedCameraEventCount() {
+        return mCameraDispatcher.getDroppedCount();
+    }
+
+    /**
+     * Sets the delivered and dropped camera frame counts back to 0.
+     */
+    public void resetCameraEventStatistics() {
+        mCameraDispatcher.resetStatistics();
+    }
+
+    /**
+     * Subscribes a consumer to the camera stream, delivering on the thread
+     * that calls this method. See
+     * {@link #subscribeCamera(CameraEventConsumer, int, int, Looper)}.
+     *
+     * @param consumer The consumer.
+     * @param policy   The delivery policy, see {@link #setCameraDeliveryPolicy(int)}.
+     * @return The subscription.
+     */
+    public CameraSubscription subscribeCamera(final CameraEventConsumer consumer, final int policy) {
+        return subscribeCamera(consumer, policy, DEFAULT_CAMERA_QUEUE_SIZE, Looper.myLooper());
+    }
+
+    /**
+     * Subscribes a consumer to the camera stream.
+     * <p>
+     * Every received frame is passed to the event listener and to each
+     * subscribed consumer, such as a recorder, a preview and an analyzer.
+     * They all share the same {@link CameraEvent} and data buffer without
+     * copies. Each subscription has its own queue and delivery policy, and
+     * delivers on the thread of its looper. A consumer on its own thread,
+     * for example a {@link android.os.HandlerThread}, can be slow without
+     * delaying the other consumers; only its own frames are dropped.
+     * </p><p>
+     * In the pooled buffer modes, each consumer holds its own reference to
+     * the event. The buffer goes back to the pool when all of them are done,
+     * see {@link #setCameraBufferMode(int)}.
+     * </p>
+     *
+     * @param consumer  The consumer.
+     * @param policy    The delivery policy, see {@link #setCameraDeliveryPolicy(int)}.
+     * @param queueSize The maximum number of waiting frames for
+     *                  {@link #CAMERA_DELIVERY_BOUNDED}.
+     * @param looper    The looper of the thread to deliver on.
+     * @return The subscription.
+     */
+    public CameraSubscription subscribeCamera(final CameraEventConsumer consumer, final int policy,
+            final int queueSize, final Looper looper) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer has illegal value");
+        }
+        if (looper == null) {
+            throw new IllegalArgumentException("looper has illegal value");
+        }
+        CameraEventDispatcher dispatcher = new CameraEventDispatcher(looper,
+                new CameraEventDispatcher.Receiver() {
+                    @Override
+                    public void onCameraReceived(final CameraEvent event) {
+                        consumer.onCameraReceived(event);
+                        if (mCameraBufferMode == CAMERA_BUFFER_MODE_AUTO_RECYCLE) {
+                            event.release();
+                        }
+                    }
+                }, getCameraQueueCapacity(policy, queueSize));
+        mCameraSubscribers.add(dispatcher);
+        return new CameraSubscription(dispatcher);
+    }
+
+    /**
+     * Ends a subscription. Frames waiting for the consumer are dropped.
+     *
+     * @param subscription The subscription from
+     *                     {@link #subscribeCamera(CameraEventConsumer, int)}.
+     */
+    public void unsubscribeCamera(final CameraSubscription subscription) {
+        if (subscription == null) {
+            throw new IllegalArgumentException("subscription has illegal value");
+        }
+        mCameraSubscribers.remove(subscription.getDispatcher());
+        subscription.getDispatcher().clear();
+    }
+
+    /**
+     * Returns the statistics of the camera stream: missing frames, frame
+     * intervals, dispatch latency and data rate. The statistics are reset
+     * each time the camera is started.
+     *
+     * @return The statistics, updated as frames arrive.
+     */
+    public CameraStreamStats getCameraStreamStats() {
+        return mCameraStreamStats;
+    }
+
+    /**
+     * Returns the pool used for camera frames in the pooled buffer modes.
+     *
+     * @return The pool, or null if no pooled mode has been set.
+     */
+    public CameraFramePool getCameraFramePool() {
+        return mCameraFramePool;
+    }
+
     /**
      * Configures camera settings for the next camera operation.
      *
@@ -780,8 +1504,10 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (Dbg.DEBUG) {
             Dbg.d("showBitmap w/ animation");
         }
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
 
-        byte[] buffer = EightBitMonochromeImageEncoder.convert(bitmap, 0, bitmap.getHeight());
+        byte[] buffer = encodeDisplayData(bitmap);
         Intent intent = new Intent(Control.Intents.CONTROL_DISPLAY_DATA_INTENT);
         intent.putExtra(Control.Intents.EXTRA_DATA, buffer);
         // since raw format then other side do not know width or height
@@ -809,8 +1535,10 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (Dbg.DEBUG) {
             Dbg.d("showBitmap w/ animation");
         }
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
 
-        byte[] buffer = EightBitMonochromeImageEncoder.convert(bitmap, 0, bitmap.getHeight());
+        byte[] buffer = encodeDisplayData(bitmap);
         Intent intent = new Intent(Control.Intents.CONTROL_DISPLAY_DATA_INTENT);
         intent.putExtra(Control.Intents.EXTRA_DATA, buffer);
         // since raw format then other side do not know width or height
@@ -835,6 +1563,8 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (Dbg.DEBUG) {
             Dbg.d("showLayout w/ animation");
         }
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
 
         Intent intent = new Intent(Control.Intents.CONTROL_PROCESS_LAYOUT_INTENT);
         intent.putExtra(Control.Intents.EXTRA_DATA_XML_LAYOUT, layoutId);
@@ -858,6 +1588,8 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (Dbg.DEBUG) {
             Dbg.d("showLayout w/ animation");
         }
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
 
         Intent intent = new Intent(Control.Intents.CONTROL_PROCESS_LAYOUT_INTENT);
         intent.putExtra(Control.Intents.EXTRA_DATA_XML_LAYOUT, layoutId);
@@ -893,6 +1625,8 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (Dbg.DEBUG) {
             Dbg.v("showDialogMessage: mode: " + mode + ", text: " + text);
         }
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
         Intent intent = new Intent(SmartEyeglassControl.Intents.CONTROL_DIALOG_OPEN_INTENT);
         intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DIALOG_MODE, mode);
         intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DIALOG_MESSAGE, text);
@@ -913,6 +1647,8 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         if (buttons.length > DIALOG_BUTTON_MAX_NUM) {
             throw new IllegalArgumentException("more than an upper limit on the number of buttons that can be set.");
         }
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
         Intent intent = new Intent(SmartEyeglassControl.Intents.CONTROL_DIALOG_OPEN_INTENT);
         intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DIALOG_MODE,
                 SmartEyeglassControl.Intents.DIALOG_MODE_USER_DEFINED);
@@ -1087,6 +1823,8 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
      */
     public void setRenderMode(int renderingMode) {
         this.mRenderingMode = renderingMode;
+        cancelPendingBitmap();
+        invalidateDifferentialFrame();
         Intent intent = new Intent(SmartEyeglassControl.Intents.CONTROL_AR_SET_MODE_INTENT);
         intent.putExtra(SmartEyeglassControl.Intents.EXTRA_AR_MODE, renderingMode);
         sendToHostApp(intent);
@@ -1160,6 +1898,113 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         sendToHostApp(intent);
     }
 
+    /**
+     * Registers several images to be rendered by the AR engine, packed into
+     * as few intents as possible. On hosts older than API version 4, that
+     * is until the host reports a newer version, see
+     * {@link #getHostApiVersion()}, each object is registered with
+     * {@link #registerARObject(RenderObject)}.
+     * The result of each registration is sent to the
+     * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onARRegistrationResult}
+     * handler for your app.
+     *
+     * @param objects The configured render objects.
+     */
+    public void registerARObjects(final Collection<? extends RenderObject> objects) {
+        checkARObjects(objects);
+        if (mHostApiVersion < AR_BATCH_API_VERSION) {
+            for (RenderObject object : objects) {
+                registerARObject(object);
+            }
+            return;
+        }
+        sendBatch(ARObjectBatch.toRegisterIntents(objects));
+    }
+
+    /**
+     * Executes the change of position of several registered AR objects,
+     * packed into as few intents as possible. On hosts older than API
+     * version 4 each object is moved with {@link #moveARObject(RenderObject)}.
+     *
+     * @param objects The registered AR objects.
+     */
+    public void moveARObjects(final Collection<? extends RenderObject> objects) {
+        checkARObjects(objects);
+        if (mHostApiVersion < AR_BATCH_API_VERSION) {
+            for (RenderObject object : objects) {
+                moveARObject(object);
+            }
+            return;
+        }
+        sendBatch(ARObjectBatch.toMoveIntents(objects));
+    }
+
+    /**
+     * Executes the change of rendering order of several registered AR
+     * objects, packed into as few intents as possible. On hosts older than
+     * API version 4 each object is changed with
+     * {@link #changeARObjectOrder(RenderObject)}.
+     *
+     * @param objects The registered AR objects.
+     */
+    public void changeARObjectsOrder(final Collection<? extends RenderObject> objects) {
+        checkARObjects(objects);
+        if (mHostApiVersion < AR_BATCH_API_VERSION) {
+            for (RenderObject object : objects) {
+                changeARObjectOrder(object);
+            }
+            return;
+        }
+        sendBatch(ARObjectBatch.toOrderIntents(objects));
+    }
+
+    /**
+     * Deletes several AR objects, packed into as few intents as possible.
+     * On hosts older than API version 4 each object is deleted with
+     * {@link #deleteARObject(RenderObject)}.
+     *
+     * @param objects The registered objects.
+     */
+    public void deleteARObjects(final Collection<? extends RenderObject> objects) {
+        checkNoNullObject(objects);
+        if (mHostApiVersion < AR_BATCH_API_VERSION) {
+            for (RenderObject object : objects) {
+                deleteARObject(object);
+            }
+            return;
+        }
+        sendBatch(ARObjectBatch.toDeleteIntents(objects));
+    }
+
+    /** */
+    private void checkARObjects(final Collection<? extends RenderObject> objects) {
+        if (mRenderingMode != SmartEyeglassControl.Intents.MODE_AR) {
+            // error, not in AR mode so operation not possible
+            throw new IllegalStateException("Not in AR mode");
+        }
+
+        checkNoNullObject(objects);
+    }
+
+    /** */
+    private static void checkNoNullObject(final Collection<? extends RenderObject> objects) {
+        if (objects == null) {
+            throw new IllegalArgumentException("objects has illegal value");
+        }
+        for (RenderObject object : objects) {
+            if (object == null) {
+                throw new IllegalArgumentException("objects has illegal value");
+            }
+        }
+    }
+
+    /** */
+    private void sendBatch(final List<Intent> intents) {
+        for (Intent intent : intents) {
+            sendToHostApp(intent);
+        }
+    }
+
     /**
      * Sends object data in response to a request from the AR engine for update of a
      * static object display. Call this in your handler for
@@ -1209,24 +2054,14 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             throw new IllegalArgumentException("Images that are trying to display too large");
         }
 
-        if (mLocalRenderAnimationSocket != null) {
-            try {
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-
-                bitmap.compress(Bitmap.CompressFormat.PNG, PNG_COMPLESS_QUALITY, byteArrayOutputStream);
-
-                byte[] imageByteArray = byteArrayOutputStream.toByteArray();
+        if (mDisplayGovernorEnabled && !mDisplayGovernor.admitUpdate()) {
+            return;
+        }
 
-                DataOutputStream outputStream = new DataOutputStream(mLocalRenderAnimationSocket.getOutputStream());
-                outputStream.writeInt(objectId);
-                outputStream.writeInt(SmartEyeglassControl.Intents.INVALID_DISPLAY_DATA_TRANSACTION_NUMBER);
-                outputStream.writeInt(imageByteArray.length);
-                outputStream.write(imageByteArray);
-            } catch (IOException e) {
-                if (Dbg.DEBUG) {
-                    Dbg.e(e.getMessage(), e);
-                }
-            }
+        ARAnimationTransport transport = mARAnimationTransport;
+        if (transport != null) {
+            transport.send(objectId, SmartEyeglassControl.Intents.INVALID_DISPLAY_DATA_TRANSACTION_NUMBER,
+                    mARFrameCache.encode(bitmap));
         }
     }
 
@@ -1234,6 +2069,9 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
      * Sends the image data of each frame of the animation object.
      * A processing result will be notified if display processing is completed.
      * Response method {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onResultSendAnimationObject(int,int)}
+     * If the frame is dropped before it reaches the host, because a newer
+     * frame of the same object replaced it, the host did not keep up or AR
+     * animation is not enabled, the result is {@link com.sony.smarteyeglass.SmartEyeglassControl.Intents#DISPLAY_DATA_RESULT_CANNOT_DRAW}.
      * Image of more than 57822 pixels can not be sent.
      * @param objectId The object ID.
      * @param bitmap    The bitmap image.
@@ -1253,24 +2091,64 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
             throw new IllegalArgumentException("Images that are trying to display too large");
         }
 
-        if (mLocalRenderAnimationSocket != null) {
-            try {
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                bitmap.compress(Bitmap.CompressFormat.PNG, PNG_COMPLESS_QUALITY, byteArrayOutputStream);
+        ARAnimationTransport transport = mARAnimationTransport;
+        if (transport != null) {
+            transport.send(objectId, transactionNumber,
+                    mARFrameCache.encode(bitmap));
+        } else if (transactionNumber
+                != SmartEyeglassControl.Intents.INVALID_DISPLAY_DATA_TRANSACTION_NUMBER) {
+            // Not enabled yet or already disabled, the frame goes nowhere
+            mARFrameDropListener.onFrameDropped(transactionNumber);
+        }
+    }
 
-                byte[] imageByteArray = byteArrayOutputStream.toByteArray();
+    /**
+     * Sets the size limit of the cache of compressed AR animation frames.
+     * <p>
+     * {@link #sendARAnimationObject(int, Bitmap)} and
+     * {@link #sendARAnimationObjectWithCallback(int, Bitmap, int)} compress
+     * each bitmap to PNG once and send the cached data when the same bitmap
+     * is sent again, as long as it has not been drawn into since. The cache
+     * holds on to the bitmaps until they are evicted, recycled or the cache
+     * is cleared, so the bitmaps count against the limit together with their
+     * PNG data. The default limit is 4 MB.
+     * </p>
+     *
+     * @param maxSize The size limit in bytes of bitmaps and PNG data, 0 to
+     *                disable the cache.
+     */
+    public void setARFrameCacheSize(final int maxSize) {
+        mARFrameCache.setMaxSize(maxSize);
+    }
 
-                DataOutputStream outputStream = new DataOutputStream(mLocalRenderAnimationSocket.getOutputStream());
-                outputStream.writeInt(objectId);
-                outputStream.writeInt(transactionNumber);
-                outputStream.writeInt(imageByteArray.length);
-                outputStream.write(imageByteArray);
-            } catch (IOException e) {
-                if (Dbg.DEBUG) {
-                    Dbg.e(e.getMessage(), e);
-                }
-            }
-        }
+    /**
+     * Empties the cache of compressed AR animation frames, for example when
+     * an animation is replaced by another one.
+     */
+    public void clearARFrameCache() {
+        mARFrameCache.clear();
+    }
+
+    /**
+     * Returns the number of AR animation frames sent from the cache,
+     * without compressing the bitmap.
+     *
+     * @return The cache hit count.
+     */
+    public int getARFrameCacheHitCount() {
+        return mARFrameCache.getHitCount();
+    }
+
+    /**
+     * Returns the number of AR animation frames that were not written to
+     * the host, because a newer frame of the same object replaced them or
+     * because the host did not keep up, since animation was last enabled.
+     *
+     * @return The dropped frame count.
+     */
+    public int getDroppedARAnimationFrameCount() {
+        ARAnimationTransport transport = mARAnimationTransport;
+        return (transport != null) ? transport.getDroppedCount() : 0;
     }
 
     /**
@@ -1408,29 +2286,74 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
     private LocalServerSocket mLocalServerSocket[] = {null, null};
     /** */
     private final String mCameraSocketName[] = {"CameraImage"};
-    /** */
-    private LocalSocket mLocalRenderAnimationSocket;
-
-    /** */
-    private class CameraHandlerCallback implements Handler.Callback {
+    /** Writes the AR animation frames, or null when animation is disabled. */
+    private volatile ARAnimationTransport mARAnimationTransport;
+    /** Reports a failure result for AR animation frames that were not sent. */
+    private final ARAnimationTransport.DropListener mARFrameDropListener =
+            new ARAnimationTransport.DropListener() {
+                @Override
+                public void onFrameDropped(final int transactionNumber) {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mGeneralEventListener.onResultSendAnimationObject(transactionNumber,
+                                    SmartEyeglassControl.Intents.DISPLAY_DATA_RESULT_CANNOT_DRAW);
+                        }
+                    });
+                }
+            };
+    /** The camera buffer mode, read by the socket thread. */
+    private volatile int mCameraBufferMode = CAMERA_BUFFER_MODE_NONE;
+    /** The pool for camera frames, created when a pooled mode is set. */
+    private volatile CameraFramePool mCameraFramePool;
+
+    /** Statistics of the camera stream. */
+    private final CameraStreamStats mCameraStreamStats = new CameraStreamStats();
+    /** Delivers camera events to the event listener. */
+    private final CameraEventDispatcher mCameraDispatcher = new CameraEventDispatcher(
+            new CameraEventDispatcher.Receiver() {
+                @Override
+                public void onCameraReceived(final CameraEvent event) {
+                    mCameraStreamStats.onFrameDispatched(event.getArrivalTime());
+                    mGeneralEventListener.onCameraReceived(event);
+                    if (mCameraBufferMode == CAMERA_BUFFER_MODE_AUTO_RECYCLE) {
+                        event.release();
+                    }
+                }
+            }, 0);
+    /** The dispatchers of the camera subscriptions. */
+    private final List<CameraEventDispatcher> mCameraSubscribers =
+            new CopyOnWriteArrayList<CameraEventDispatcher>();
 
-        @Override
-        public boolean handleMessage(Message msg) {
-            CameraEvent cameraEvent = (CameraEvent) msg.obj;
-            if (cameraEvent != null && mGeneralEventListener != null) {
-                mGeneralEventListener.onCameraReceived(cameraEvent);
-            }
-            return true;
-        }
-    };
+    /**
+     * Passes a received camera event to the event listener and all
+     * subscriptions. Each of them holds its own reference to the event.
+     */
+    private void dispatchCameraEvent(final CameraEvent event) {
+        event.retain();
+        mCameraDispatcher.offer(event);
+        for (CameraEventDispatcher dispatcher : mCameraSubscribers) {
+            event.retain();
+            dispatcher.offer(event);
+        }
+        event.release();
+    }
 
     /**
-     * Creates a socket to read the camera data.
+     * Creates a socket to read the camera data, or re-arms the socket kept
+     * open since the previous camera session.
      */
     private void openSocket() throws ControlCameraException {
         try {
-            // Open socket
             for (int i = 0; i < mCameraSocketName.length; i++) {
+                if (mLocalServerSocket[i] != null && mServerThread[i] != null
+                        && mServerThread[i].isAlive()) {
+                    mServerThread[i].arm();
+                    continue;
+                }
+                closeSocket(i);
+
+                // Open socket
                 mLocalServerSocket[i] = new LocalServerSocket(mCameraSocketName[i]);
                 if (mLocalServerSocket[i] == null) {
                     if (Dbg.DEBUG) {
@@ -1438,14 +2361,9 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
                     }
                 }
 
-                // Stop server listening thread if running
-                if (mServerThread[i] != null) {
-                    mServerThread[i].interrupt();
-                    mServerThread[i] = null;
-                }
-
                 // Start server listening thread
-                mServerThread[i] = new ServerThread(new Handler(new CameraHandlerCallback()), mLocalServerSocket[i], i);
+                mServerThread[i] = new ServerThread(mLocalServerSocket[i], i);
+                mServerThread[i].arm();
                 mServerThread[i].start();
             }
         } catch (IOException e) {
@@ -1457,71 +2375,190 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
     }
 
     /**
-     * Closes the socket to read the sensor data.
+     * Stops passing on camera data at the end of a camera session. The
+     * socket and its thread are kept for the next session.
+     */
+    private void disarmSocket() {
+        for (int i = 0; i < mServerThread.length; i++) {
+            if (mServerThread[i] != null) {
+                mServerThread[i].disarm();
+            }
+        }
+        clearCameraDispatchers();
+    }
+
+    /**
+     * Closes the socket to read the camera data.
      */
     private void closeSocket() {
-        // Close socket
         for (int i = 0; i < mLocalServerSocket.length; i++) {
+            closeSocket(i);
+        }
+        clearCameraDispatchers();
+    }
+
+    /**
+     * Closes one socket and stops its thread.
+     */
+    private void closeSocket(final int index) {
+        // Stop thread
+        if (mServerThread[index] != null) {
+            mServerThread[index].disarm();
+            mServerThread[index].interrupt();
+            mServerThread[index] = null;
+            if (mLocalServerSocket[index] != null) {
+                wakeAccept(mCameraSocketName[index]);
+            }
+        }
+
+        // Close socket
+        try {
+            if (mLocalServerSocket[index] != null) {
+                mLocalServerSocket[index].close();
+                mLocalServerSocket[index] = null;
+            }
+        } catch (IOException e) {
+            if (Dbg.DEBUG) {
+                Dbg.w(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Connects to a server socket and disconnects right away, so that a
+     * thread blocked in accept() returns and sees that it was interrupted.
+     * Closing a LocalServerSocket does not wake such a thread.
+     */
+    private static void wakeAccept(final String socketName) {
+        LocalSocket socket = new LocalSocket();
+        try {
+            socket.connect(new LocalSocketAddress(socketName));
+        } catch (IOException e) {
+            if (Dbg.DEBUG) {
+                Dbg.w(e.getMessage(), e);
+            }
+        } finally {
             try {
-                if (mLocalServerSocket[i] != null) {
-                    mLocalServerSocket[i].close();
-                    mLocalServerSocket[i] = null;
-                }
+                socket.close();
             } catch (IOException e) {
                 if (Dbg.DEBUG) {
                     Dbg.w(e.getMessage(), e);
                 }
             }
         }
+    }
 
-        // Stop thread
-        for (int i = 0; i < mServerThread.length; i++) {
-            if (mServerThread[i] != null) {
-                mServerThread[i].interrupt();
-                mServerThread[i] = null;
-            }
+    /** Drops the camera events that have not been delivered yet. */
+    private void clearCameraDispatchers() {
+        mCameraDispatcher.clear();
+        for (CameraEventDispatcher dispatcher : mCameraSubscribers) {
+            dispatcher.clear();
         }
     }
 
     /**
-     * Provides a thread which can read from the socket.
+     * Provides a thread which can read from the socket. The thread accepts
+     * one connection per camera session and keeps running between sessions,
+     * until it is interrupted or the socket is closed.
      */
     private class ServerThread extends Thread {
-        /** */
-        private final Handler mHandler;
         /** */
         private final LocalServerSocket mLocalServerSocket;
         /** */
         private final int mIndex;
+        /** True while a camera session is running. */
+        private volatile boolean mArmed;
+        /** The connection of the current session, or null. */
+        private volatile LocalSocket mConnection;
 
         /**
          * Creates a thread which can read from the socket.
-         *
-         * @param handler The handler to post messages on.
          */
-        public ServerThread(final Handler handler,
-                final LocalServerSocket localServerSocket, final int index) {
-            mHandler = handler;
+        public ServerThread(final LocalServerSocket localServerSocket, final int index) {
             mLocalServerSocket = localServerSocket;
             mIndex = index;
         }
 
+        /** Starts passing on the camera data of a new session. */
+        void arm() {
+            mArmed = true;
+        }
+
+        /**
+         * Stops passing on camera data, and drops the connection of the
+         * session that has ended so that the thread waits for the next one.
+         */
+        void disarm() {
+            mArmed = false;
+            LocalSocket connection = mConnection;
+            if (connection != null) {
+                try {
+                    connection.shutdownInput();
+                } catch (IOException e) {
+                    if (Dbg.DEBUG) {
+                        Dbg.w(e.getMessage(), e);
+                    }
+                }
+            }
+        }
+
         @Override
         public void run() {
-            try {
-                DataInputStream inStream = new DataInputStream(mLocalServerSocket.accept()
-                        .getInputStream());
-                while (!isInterrupted()) {
-                    CameraEvent event = decodeCameraData(inStream, mIndex);
-                    if (event != null) {
-                        Message msg = new Message();
-                        msg.obj = event;
-                        mHandler.sendMessage(msg);
+            while (!isInterrupted()) {
+                LocalSocket connection;
+                try {
+                    connection = mLocalServerSocket.accept();
+                } catch (IOException e) {
+                    // The socket has been closed
+                    if (Dbg.DEBUG) {
+                        Dbg.w(e.getMessage(), e);
                     }
+                    return;
                 }
-            } catch (IOException e) {
-                if (Dbg.DEBUG) {
-                    Dbg.w(e.getMessage(), e);
+                mConnection = connection;
+                try {
+                    readSession(connection);
+                } catch (IOException e) {
+                    // The session has ended
+                    if (Dbg.DEBUG) {
+                        Dbg.v("Camera connection closed: " + e.getMessage());
+                    }
+                } finally {
+                    mConnection = null;
+                    try {
+                        connection.close();
+                    } catch (IOException e) {
+                        if (Dbg.DEBUG) {
+                            Dbg.w(e.getMessage(), e);
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Reads camera data until the connection is closed. */
+        private void readSession(final LocalSocket connection) throws IOException {
+            PacketReader reader = new PacketReader(connection.getInputStream(),
+                    CAMERA_BUFFER_SIZE, MAX_CAMERA_DATA_SIZE);
+            while (!isInterrupted()) {
+                CameraEvent event;
+                try {
+                    event = decodeCameraData(reader, mIndex);
+                } catch (MalformedPacketException e) {
+                    if (Dbg.DEBUG) {
+                        Dbg.w(e.getMessage(), e);
+                    }
+                    reader.resync();
+                    continue;
+                }
+                if (event == null) {
+                    continue;
+                }
+                if (mArmed) {
+                    dispatchCameraEvent(event);
+                } else {
+                    // Data of a session that has been stopped
+                    event.release();
                 }
             }
         }
@@ -1530,83 +2567,47 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
     /**
      * Provides decoding packet from HostApp.
      */
-    private CameraEvent decodeCameraData(final DataInputStream inStream,
+    private CameraEvent decodeCameraData(final PacketReader reader,
             final int index) throws IOException {
-        int totalLength = inStream.readInt();
+        int totalLength = reader.readInt();
         if (totalLength == 0) {
             return null;
         }
-        int frameId = inStream.readInt();
-        long timestamp = inStream.readLong();
-        int dataSize = inStream.readInt();
+        int frameId = reader.readInt();
+        long timestamp = reader.readLong();
+        int dataSize = reader.readInt();
         if (dataSize > 0) {
-            byte[] image = new byte[dataSize];
+            reader.checkSize(dataSize);
+            CameraFramePool pool = (mCameraBufferMode != CAMERA_BUFFER_MODE_NONE) ? mCameraFramePool : null;
+            byte[] image = (pool != null) ? pool.acquire(dataSize) : new byte[dataSize];
 
-            int bytesRead, totalBytes = 0;
-            while (((bytesRead = inStream.read(image, totalBytes, dataSize - totalBytes)) != -1)
-                    && (totalBytes < dataSize)) {
-                totalBytes += bytesRead;
+            try {
+                reader.readFully(image, 0, dataSize);
+            } catch (IOException e) {
+                if (pool != null) {
+                    pool.release(image);
+                }
+                throw e;
             }
 
-            if (totalBytes == dataSize) {
-                return new CameraEvent(index, frameId, timestamp, image);
-            } else {
-                return null;
-            }
+            CameraEvent event = (pool != null)
+                    ? new CameraEvent(index, frameId, timestamp, image, dataSize, pool)
+                    : new CameraEvent(index, frameId, timestamp, image);
+            recordArrival(event, dataSize);
+            return event;
         } else {
-            int status = inStream.readInt();
-            return new CameraEvent(index, frameId, timestamp, status);
+            int status = reader.readInt();
+            CameraEvent event = new CameraEvent(index, frameId, timestamp, status);
+            recordArrival(event, 0);
+            return event;
         }
     }
 
     /** */
-    private static class EightBitMonochromeImageEncoder {
-
-        public static byte[] convert(Bitmap bitmap, int rowOffset, int rowCount) {
-
-            Config config = bitmap.getConfig();
-
-            if (config == Config.ARGB_8888 || config == Config.RGB_565) {
-            } else {
-                throw new IllegalArgumentException("Only Bitmaps with config ARGB_8888 or RGB_565 are handled.");
-            }
-
-            int width = bitmap.getWidth();
-            int height = rowCount;
-            int pixelCount = width * height;
-            int[] pixels = new int[pixelCount];
-
-            bitmap.getPixels(pixels, 0, width, 0, rowOffset, width, Math.min(height, bitmap.getHeight() - rowOffset));
-
-            byte[] resultArray = new byte[pixelCount];
-            int bwByteIndex = 0;
-
-            for (int i = 0; i < pixelCount; i++) {
-                int pixel = pixels[i];
-                int monochromePixcel = getLumaCorrectedMonochromeValueReducedDepth(pixel);
-                //note that the RGB_565 type images also returns RGB8888 format when using getPixels
-
-                resultArray[bwByteIndex] = (byte) monochromePixcel;
-                bwByteIndex++;
-            }
-
-            return resultArray;
-        }
-
-        private static int getLumaCorrectedMonochromeValueReducedDepth(int argb) {
-            // this function assumes the color format of RGBA8888 on the argb parameter
-            int value, alpha, r, g, b;
-
-            alpha = Color.alpha(argb);
-            r = Color.red(argb);
-            g = Color.green(argb);
-            b = Color.blue(argb);
-
-            value = (r * 299 + g * 587 + b * 114) / 1000; // monochrome by luma correction
-            value = (value * alpha) / 255;
-
-            return value;
-        }
+    private void recordArrival(final CameraEvent event, final int byteCount) {
+        long now = System.nanoTime();
+        event.setArrivalTime(now);
+        mCameraStreamStats.onFrameReceived(event.getFrameId(), byteCount, now);
     }
 
     /**
@@ -1617,8 +2618,8 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
         closeLocalServer();
 
         try {
-            mLocalRenderAnimationSocket = new LocalSocket();
-            mLocalRenderAnimationSocket.connect(new LocalSocketAddress(socketAddress));
+            mARAnimationTransport = new ARAnimationTransport(socketAddress,
+                    ARAnimationTransport.DEFAULT_CAPACITY, mARFrameDropListener);
         } catch (Exception e) {
             if (Dbg.DEBUG) {
                 Dbg.e("Failed connecting socket for AR Animation data.");
@@ -1630,15 +2631,10 @@ public class SmartEyeglassControlUtils extends BroadcastReceiver {
      * Closes the socket to write the AR Animation data.
      */
     private void closeLocalServer() {
-        if (mLocalRenderAnimationSocket != null) {
-            try {
-                mLocalRenderAnimationSocket.close();
-            } catch (Exception e) {
-                if (Dbg.DEBUG) {
-                    Dbg.e("Failed closing socket for AR Animation data.");
-                }
-            }
-            mLocalRenderAnimationSocket = null;
+        ARAnimationTransport transport = mARAnimationTransport;
+        if (transport != null) {
+            mARAnimationTransport = null;
+            transport.close();
         }
     }
 }
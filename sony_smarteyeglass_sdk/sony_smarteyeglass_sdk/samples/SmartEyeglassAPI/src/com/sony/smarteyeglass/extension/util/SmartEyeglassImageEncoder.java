@@ -0,0 +1,89 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+
+import com.sonyericsson.extras.liveware.aef.control.Control;
+import com.sonyericsson.extras.liveware.extension.util.control.ControlImageEncoder;
+import com.sonyericsson.extras.liveware.extension.util.registration.DeviceInfoHelper;
+import com.sony.smarteyeglass.SmartEyeglassControl;
+
+/**
+ * Encodes bitmaps shown by a
+ * {@link com.sonyericsson.extras.liveware.extension.util.control.ControlExtension}
+ * in the SmartEyeglass raw format, so that no PNG compression is needed.
+ * <p>
+ * {@link SmartEyeglassControlUtils} registers {@link #FACTORY} with
+ * {@code ControlExtension.setHostImageEncoderFactory()}, so controls on a
+ * host with a SmartEyeglass display use this encoder by default.
+ * Instances are not thread safe.
+ * </p>
+ */
+public class SmartEyeglassImageEncoder implements ControlImageEncoder {
+
+    /** */
+    private final EightBitMonochromeImageEncoder mEncoder = new EightBitMonochromeImageEncoder();
+
+    /**
+     * The last raw buffer, reused for images of the same size. The intent
+     * extras are copied when the broadcast is sent.
+     */
+    private byte[] mBuffer;
+
+    /**
+     * Creates a raw encoder if the host application has a SmartEyeglass
+     * display, otherwise returns null.
+     */
+    public static final ControlImageEncoder.Factory FACTORY = new ControlImageEncoder.Factory() {
+        @Override
+        public ControlImageEncoder create(final Context context, final String hostAppPackageName) {
+            if (DeviceInfoHelper.isSmartEyeglassScreenSupported(context, hostAppPackageName)) {
+                return new SmartEyeglassImageEncoder();
+            }
+            return null;
+        }
+    };
+
+    @Override
+    public void putImageData(final Intent intent, final Bitmap bitmap) {
+        mBuffer = mEncoder.encode(bitmap, mBuffer);
+        intent.putExtra(Control.Intents.EXTRA_DATA, mBuffer);
+        // since raw format then other side do not know width or height
+        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_HEIGHT, bitmap.getHeight());
+        // since raw format then other side do not know width or height
+        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_IMAGE_WIDTH, bitmap.getWidth());
+        intent.putExtra(SmartEyeglassControl.Intents.EXTRA_DATA_IS_RAW_FORMAT, 1);    // SmartEyeglass raw format
+    }
+}
@@ -0,0 +1,410 @@
+/*
+Copyright (c) 2011, Sony Mobile Communications Inc.
+Copyright (c) 2014, Sony Corporation
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications Inc.
+ nor the names of its contributors may be used to endorse or promote
+ products derived from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sony.smarteyeglass.extension.util.ar;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.sony.smarteyeglass.extension.util.SmartEyeglassControlUtils;
+
+/**
+ * Plays an AR animation paced by the host application.
+ * <p>
+ * Each frame is sent with
+ * {@link SmartEyeglassControlUtils#sendARAnimationObjectWithCallback(int, Bitmap, int)},
+ * and the next frame is sent when the host has reported the result of the
+ * previous one. The time from sending a frame to its result is averaged, and
+ * frames are sent no faster than the host handles them. The animation keeps
+ * its speed: the frame to send is chosen from the animation time, and the
+ * frames the host has no time for are skipped instead of queued.
+ * </p><p>
+ * The app passes the animation results and display changes on from its
+ * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener}:
+ * {@link #onResultSendAnimationObject(int, int)} from
+ * {@code onResultSendAnimationObject}, and {@link #onDisplayStateChanged()}
+ * from {@code onDisplayStatus} and {@code onStandbyStatus}. The animation
+ * pauses while the display is off or in standby, and on {@link #pause()},
+ * typically called from {@code onPause}. Use the animator from the thread
+ * that created it. Do not send other animation frames with a callback while
+ * it runs, since it picks its own transaction numbers.
+ * </p>
+ */
+public class ARAnimator {
+
+    /**
+     * Provides the frames of an animation.
+     */
+    public interface FrameSource {
+
+        /**
+         * @return The number of frames in the animation loop.
+         */
+        int getFrameCount();
+
+        /**
+         * Returns a frame of the animation. Return the same bitmap each time
+         * a frame is shown again, so that its compressed data is reused.
+         *
+         * @param index The frame index, from 0 to the frame count - 1.
+         * @return The frame, or null to skip it.
+         */
+        Bitmap getFrame(int index);
+    }
+
+    /** The default time to wait for a frame result, in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 1000;
+
+    /** Weight of the newest sample in the average host time. */
+    private static final float SMOOTHING = 0.25f;
+
+    /** Transaction number of no frame. */
+    private static final int NO_TRANSACTION = 0;
+
+    /** */
+    private final SmartEyeglassControlUtils mUtils;
+
+    /** */
+    private final int mObjectId;
+
+    /** */
+    private final FrameSource mSource;
+
+    /** The time between animation frames, in milliseconds. */
+    private final long mFrameInterval;
+
+    /** */
+    private final long mTimeout;
+
+    /** */
+    private final Handler mHandler = new Handler();
+
+    /** True between {@link #start()} and {@link #stop()}. */
+    private boolean mRunning;
+
+    /** */
+    private boolean mPaused;
+
+    /** True while the display is off or in standby. */
+    private boolean mDisplayOff;
+
+    /** True while frames are being sent. */
+    private boolean mTicking;
+
+    /** Uptime at animation time 0, valid while ticking. */
+    private long mClockBase;
+
+    /** The animation time when ticking stopped, in milliseconds. */
+    private long mElapsed;
+
+    /** The animation frame number sent last, -1 for none. */
+    private long mLastFrame = -1;
+
+    /** The transaction number of the frame waiting for a result. */
+    private int mInFlight = NO_TRANSACTION;
+
+    /** */
+    private int mNextTransactionNumber = 1;
+
+    /** Uptime when the frame in flight was sent. */
+    private long mSendTime;
+
+    /** The average time from sending a frame to its result, 0 if unknown. */
+    private float mAverageHostTime;
+
+    /** */
+    private int mSentCount;
+
+    /** */
+    private int mSkippedCount;
+
+    /** */
+    private int mTimeoutCount;
+
+    /** Sends the next frame. */
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            sendFrame();
+        }
+    };
+
+    /** Gives up on a frame whose result did not come. */
+    private final Runnable mTimeoutCheck = new Runnable() {
+        @Override
+        public void run() {
+            // The timeout says nothing about how fast the host is, so it
+            // is only counted
+            mTimeoutCount++;
+            mInFlight = NO_TRANSACTION;
+            scheduleNext();
+        }
+    };
+
+    /**
+     * Creates an animator with the default result timeout.
+     *
+     * @param utils         The instance used to send frames.
+     * @param objectId      The ID of the registered animated object.
+     * @param source        The frames of the animation.
+     * @param frameInterval The time between animation frames, in milliseconds.
+     */
+    public ARAnimator(final SmartEyeglassControlUtils utils, final int objectId,
+            final FrameSource source, final long frameInterval) {
+        this(utils, objectId, source, frameInterval, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates an animator.
+     *
+     * @param utils         The instance used to send frames.
+     * @param objectId      The ID of the registered animated object.
+     * @param source        The frames of the animation.
+     * @param frameInterval The time between animation frames, in milliseconds.
+     * @param timeout       The time to wait for the result of a frame before
+     *                      the next one is sent, in milliseconds.
+     */
+    public ARAnimator(final SmartEyeglassControlUtils utils, final int objectId,
+            final FrameSource source, final long frameInterval, final long timeout) {
+        if (utils == null) {
+            throw new IllegalArgumentException("utils has illegal value");
+        }
+        if (objectId <= 0) {
+            throw new IllegalArgumentException("objectId has illegal value");
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("source has illegal value");
+        }
+        if (frameInterval <= 0) {
+            throw new IllegalArgumentException("frameInterval has illegal value");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout has illegal value");
+        }
+        mUtils = utils;
+        mObjectId = objectId;
+        mSource = source;
+        mFrameInterval = frameInterval;
+        mTimeout = timeout;
+    }
+
+    /**
+     * Starts the animation from its first frame. Call this after animation
+     * has been enabled with
+     * {@link SmartEyeglassControlUtils#enableARAnimationRequest()}.
+     */
+    public void start() {
+        halt();
+        mRunning = true;
+        mPaused = false;
+        mElapsed = 0;
+        mLastFrame = -1;
+        mDisplayOff = mUtils.isDisplaySuspended();
+        update();
+    }
+
+    /**
+     * Stops the animation.
+     */
+    public void stop() {
+        mRunning = false;
+        update();
+    }
+
+    /**
+     * Pauses the animation, keeping the current frame.
+     */
+    public void pause() {
+        mPaused = true;
+        update();
+    }
+
+    /**
+     * Continues a paused animation where it stopped.
+     */
+    public void resume() {
+        mPaused = false;
+        update();
+    }
+
+    /**
+     * Checks whether frames are currently being sent.
+     *
+     * @return True if started, not paused, and the display is visible.
+     */
+    public boolean isAnimating() {
+        return mTicking;
+    }
+
+    /**
+     * Checks the display state again. Call this from
+     * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onDisplayStatus(int)}
+     * and
+     * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onStandbyStatus(int)}.
+     */
+    public void onDisplayStateChanged() {
+        mDisplayOff = mUtils.isDisplaySuspended();
+        update();
+    }
+
+    /**
+     * Handles an animation frame result. Call this from
+     * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onResultSendAnimationObject(int, int)}.
+     *
+     * @param transactionNumber The transaction number of the result.
+     * @param result            The processing result.
+     * @return True if the result was for a frame sent by this animator.
+     */
+    public boolean onResultSendAnimationObject(final int transactionNumber, final int result) {
+        if (mInFlight == NO_TRANSACTION || transactionNumber != mInFlight) {
+            return false;
+        }
+        mHandler.removeCallbacks(mTimeoutCheck);
+        onFrameDone(SystemClock.uptimeMillis() - mSendTime);
+        return true;
+    }
+
+    /**
+     * Returns the time between frames sent, adapted to the host.
+     *
+     * @return The interval in milliseconds, at least the animation frame
+     *         interval.
+     */
+    public long getCurrentFrameInterval() {
+        return Math.max(mFrameInterval, (long) mAverageHostTime);
+    }
+
+    /**
+     * @return The number of frames sent.
+     */
+    public int getSentFrameCount() {
+        return mSentCount;
+    }
+
+    /**
+     * @return The number of animation frames skipped because the host did
+     *         not keep up.
+     */
+    public int getSkippedFrameCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * @return The number of frames whose result did not come in time.
+     */
+    public int getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    /** Starts or stops sending frames to match the state. */
+    private void update() {
+        boolean tick = mRunning && !mPaused && !mDisplayOff;
+        if (tick == mTicking) {
+            return;
+        }
+        if (tick) {
+            mTicking = true;
+            mClockBase = SystemClock.uptimeMillis() - mElapsed;
+            mHandler.post(mTick);
+        } else {
+            halt();
+        }
+    }
+
+    /** Stops sending frames and keeps the animation time. */
+    private void halt() {
+        if (mTicking) {
+            mElapsed = SystemClock.uptimeMillis() - mClockBase;
+            mTicking = false;
+        }
+        mInFlight = NO_TRANSACTION;
+        mHandler.removeCallbacks(mTick);
+        mHandler.removeCallbacks(mTimeoutCheck);
+    }
+
+    /** */
+    private void sendFrame() {
+        if (!mTicking || mInFlight != NO_TRANSACTION) {
+            return;
+        }
+        if (mUtils.isDisplaySuspended()) {
+            mDisplayOff = true;
+            update();
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long frame = (now - mClockBase) / mFrameInterval;
+        if (frame <= mLastFrame) {
+            // Sent before this frame was due
+            mHandler.postAtTime(mTick, mClockBase + (mLastFrame + 1) * mFrameInterval);
+            return;
+        }
+        if (mLastFrame >= 0) {
+            mSkippedCount += (int) (frame - mLastFrame - 1);
+        }
+        mLastFrame = frame;
+
+        int count = mSource.getFrameCount();
+        Bitmap bitmap = (count > 0) ? mSource.getFrame((int) (frame % count)) : null;
+        if (bitmap == null) {
+            mSendTime = now;
+            scheduleNext();
+            return;
+        }
+        int transactionNumber = mNextTransactionNumber;
+        mNextTransactionNumber = (transactionNumber == Integer.MAX_VALUE) ? 1 : transactionNumber + 1;
+        mInFlight = transactionNumber;
+        mSendTime = now;
+        mSentCount++;
+        mUtils.sendARAnimationObjectWithCallback(mObjectId, bitmap, transactionNumber);
+        mHandler.postDelayed(mTimeoutCheck, mTimeout);
+    }
+
+    /** Updates the average host time and schedules the next frame. */
+    private void onFrameDone(final long hostTime) {
+        mInFlight = NO_TRANSACTION;
+        if (mAverageHostTime == 0) {
+            mAverageHostTime = hostTime;
+        } else {
+            mAverageHostTime += SMOOTHING * (hostTime - mAverageHostTime);
+        }
+        scheduleNext();
+    }
+
+    /** */
+    private void scheduleNext() {
+        if (!mTicking) {
+            return;
+        }
+        mHandler.postAtTime(mTick, mSendTime + getCurrentFrameInterval());
+    }
+}
@@ -0,0 +1,218 @@
+/*
+Copyright (c) 2011, Sony Mobile Communications Inc.
+Copyright (c) 2014, Sony Corporation
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications Inc.
+ nor the names of its contributors may be used to endorse or promote
+ products derived from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sony.smarteyeglass.extension.util.ar;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.sony.smarteyeglass.SmartEyeglassControl;
+import com.sonyericsson.extras.liveware.aef.control.Control;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+/**
+ * Packs AR operations on several render objects into batch intents, and
+ * unpacks batch intents into the equivalent single-object intents.
+ * <p>
+ * Each entry of a batch holds exactly the extras of the single-object
+ * intent, so a host, or a local stand-in for one, handles a batch by
+ * handling the intents returned by {@link #unpack(Intent)} in order.
+ * A batch holds at most {@link #MAX_OBJECTS_PER_INTENT} objects, which
+ * keeps each intent well below the Binder transaction limit.
+ * </p>
+ */
+public final class ARObjectBatch {
+
+    /** The maximum number of objects in one batch intent. */
+    public static final int MAX_OBJECTS_PER_INTENT = 64;
+
+    /** */
+    private static final int OPERATION_REGISTER = 0;
+
+    /** */
+    private static final int OPERATION_MOVE = 1;
+
+    /** */
+    private static final int OPERATION_ORDER = 2;
+
+    /** */
+    private ARObjectBatch() {
+    }
+
+    /**
+     * Creates the intents that register objects.
+     *
+     * @param objects The objects, none of them null.
+     * @return The batch intents, one per {@link #MAX_OBJECTS_PER_INTENT}
+     *         objects.
+     */
+    public static List<Intent> toRegisterIntents(final Collection<? extends RenderObject> objects) {
+        return pack(SmartEyeglassControl.Intents.CONTROL_AR_REGISTER_OBJECTS_REQUEST_INTENT,
+                objects, OPERATION_REGISTER);
+    }
+
+    /**
+     * Creates the intents that move objects to their current positions.
+     *
+     * @param objects The objects, none of them null.
+     * @return The batch intents, one per {@link #MAX_OBJECTS_PER_INTENT}
+     *         objects.
+     */
+    public static List<Intent> toMoveIntents(final Collection<? extends RenderObject> objects) {
+        return pack(SmartEyeglassControl.Intents.CONTROL_AR_MOVE_OBJECTS_INTENT,
+                objects, OPERATION_MOVE);
+    }
+
+    /**
+     * Creates the intents that change objects to their current rendering
+     * order.
+     *
+     * @param objects The objects, none of them null.
+     * @return The batch intents, one per {@link #MAX_OBJECTS_PER_INTENT}
+     *         objects.
+     */
+    public static List<Intent> toOrderIntents(final Collection<? extends RenderObject> objects) {
+        return pack(SmartEyeglassControl.Intents.CONTROL_AR_CHANGE_OBJECTS_ORDER_INTENT,
+                objects, OPERATION_ORDER);
+    }
+
+    /**
+     * Creates the intents that delete objects.
+     *
+     * @param objects The objects, none of them null.
+     * @return The batch intents, one per {@link #MAX_OBJECTS_PER_INTENT}
+     *         objects.
+     */
+    public static List<Intent> toDeleteIntents(final Collection<? extends RenderObject> objects) {
+        List<Intent> intents = new ArrayList<Intent>();
+        int[] ids = new int[Math.min(objects.size(), MAX_OBJECTS_PER_INTENT)];
+        int count = 0;
+        int remaining = objects.size();
+        for (RenderObject object : objects) {
+            ids[count++] = object.getObjectId();
+            remaining--;
+            if (count == ids.length) {
+                Intent intent = new Intent(SmartEyeglassControl.Intents.CONTROL_AR_DELETE_OBJECTS_INTENT);
+                intent.putExtra(SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_IDS, ids);
+                intents.add(intent);
+                ids = new int[Math.min(remaining, MAX_OBJECTS_PER_INTENT)];
+                count = 0;
+            }
+        }
+        return intents;
+    }
+
+    /**
+     * Unpacks a batch intent into the single-object intents it stands for.
+     *
+     * @param batch A batch intent.
+     * @return The single-object intents in order, or an empty list if the
+     *         intent is not a batch intent.
+     */
+    public static List<Intent> unpack(final Intent batch) {
+        List<Intent> intents = new ArrayList<Intent>();
+        String action = batch.getAction();
+        String packageName = batch.getStringExtra(Control.Intents.EXTRA_AEA_PACKAGE_NAME);
+
+        if (SmartEyeglassControl.Intents.CONTROL_AR_DELETE_OBJECTS_INTENT.equals(action)) {
+            int[] ids = batch.getIntArrayExtra(SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_IDS);
+            if (ids == null) {
+                return intents;
+            }
+            for (int id : ids) {
+                Intent intent = new Intent(SmartEyeglassControl.Intents.CONTROL_AR_DELETE_OBJECT_INTENT);
+                intent.putExtra(SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_ID, id);
+                intent.putExtra(Control.Intents.EXTRA_AEA_PACKAGE_NAME, packageName);
+                intents.add(intent);
+            }
+            return intents;
+        }
+
+        String singleAction;
+        if (SmartEyeglassControl.Intents.CONTROL_AR_REGISTER_OBJECTS_REQUEST_INTENT.equals(action)) {
+            singleAction = SmartEyeglassControl.Intents.CONTROL_AR_REGISTER_OBJECT_REQUEST_INTENT;
+        } else if (SmartEyeglassControl.Intents.CONTROL_AR_MOVE_OBJECTS_INTENT.equals(action)) {
+            singleAction = SmartEyeglassControl.Intents.CONTROL_AR_MOVE_OBJECT_INTENT;
+        } else if (SmartEyeglassControl.Intents.CONTROL_AR_CHANGE_OBJECTS_ORDER_INTENT.equals(action)) {
+            singleAction = SmartEyeglassControl.Intents.CONTROL_AR_CHANGE_OBJECT_ORDER_INTENT;
+        } else {
+            return intents;
+        }
+        ArrayList<Bundle> extras = batch.getParcelableArrayListExtra(
+                SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_LIST);
+        if (extras == null) {
+            return intents;
+        }
+        for (Bundle bundle : extras) {
+            Intent intent = new Intent(singleAction);
+            intent.putExtras(bundle);
+            intent.putExtra(Control.Intents.EXTRA_AEA_PACKAGE_NAME, packageName);
+            intents.add(intent);
+        }
+        return intents;
+    }
+
+    /** */
+    private static List<Intent> pack(final String action,
+            final Collection<? extends RenderObject> objects, final int operation) {
+        List<Intent> intents = new ArrayList<Intent>();
+        ArrayList<Bundle> extras = new ArrayList<Bundle>();
+        for (RenderObject object : objects) {
+            Intent single = new Intent();
+            if (operation == OPERATION_REGISTER) {
+                object.toRegisterExtras(single);
+            } else if (operation == OPERATION_MOVE) {
+                object.toMoveExtras(single);
+            } else {
+                object.toOrderExtras(single);
+            }
+            extras.add(single.getExtras());
+            if (extras.size() == MAX_OBJECTS_PER_INTENT) {
+                intents.add(newBatchIntent(action, extras));
+                extras = new ArrayList<Bundle>();
+            }
+        }
+        if (!extras.isEmpty()) {
+            intents.add(newBatchIntent(action, extras));
+        }
+        return intents;
+    }
+
+    /** */
+    private static Intent newBatchIntent(final String action, final ArrayList<Bundle> extras) {
+        Intent intent = new Intent(action);
+        intent.putParcelableArrayListExtra(SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_LIST, extras);
+        return intent;
+    }
+}
@@ -0,0 +1,460 @@
+/*
+Copyright (c) 2011, Sony Mobile Communications Inc.
+Copyright (c) 2014, Sony Corporation
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications Inc.
+ nor the names of its contributors may be used to endorse or promote
+ products derived from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sony.smarteyeglass.extension.util.ar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import android.graphics.PointF;
+import android.util.SparseArray;
+
+import com.sony.smarteyeglass.SmartEyeglassControl;
+import com.sony.smarteyeglass.extension.util.SmartEyeglassControlUtils;
+
+/**
+ * Keeps a scene of cylindrical AR objects and registers only the objects
+ * near the current view with the AR engine.
+ * <p>
+ * The objects are kept in an index sorted by azimuth and elevation. When
+ * the view moves, the objects inside a window around the view are
+ * registered, and registered objects that have moved out of the window
+ * by more than a margin are deleted again, so that large scenes do not
+ * exhaust the memory of the host. Registrations and deletions are sent
+ * in batches.
+ * </p><p>
+ * The app passes the AR events on from its
+ * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener}:
+ * {@link #onARObjectRequest(int)} from {@code onARObjectRequest} and
+ * {@link #onARRegistrationResult(int, int)} from
+ * {@code onARRegistrationResult}. The positions of the objects are read
+ * when they are added; to move an object, remove it and add it again.
+ * Use the manager from one thread, in AR mode.
+ * </p>
+ */
+public class ARSceneManager {
+
+    /** The default margin beyond the window before an object is deleted, in degrees. */
+    public static final float DEFAULT_MARGIN = 10.0f;
+
+    /** Degrees of a full rotation. */
+    private static final float FULL_ROTATION_DEGREE = 360.0f;
+
+    /** Degrees of a half rotation. */
+    private static final float HALF_ROTATION_DEGREE = FULL_ROTATION_DEGREE / 2;
+
+    /**
+     * An object of the scene with its position.
+     */
+    private static final class Entry {
+
+        /** */
+        final CylindricalRenderObject mObject;
+
+        /** The azimuth, from 0 up to 360 degrees. */
+        final float mAzimuth;
+
+        /** */
+        final float mElevation;
+
+        /** */
+        Entry(final CylindricalRenderObject object) {
+            PointF position = object.getPosition();
+            mObject = object;
+            mAzimuth = normalize(position.x);
+            mElevation = position.y;
+        }
+    }
+
+    /** Orders entries by azimuth, then elevation. */
+    private static final Comparator<Entry> POSITION_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry lhs, final Entry rhs) {
+            int result = Float.compare(lhs.mAzimuth, rhs.mAzimuth);
+            if (result != 0) {
+                return result;
+            }
+            return Float.compare(lhs.mElevation, rhs.mElevation);
+        }
+    };
+
+    /** */
+    private final SmartEyeglassControlUtils mUtils;
+
+    /** Half the window width, in degrees. */
+    private final float mHalfWidth;
+
+    /** Half the window height, in degrees. */
+    private final float mHalfHeight;
+
+    /** */
+    private final float mMargin;
+
+    /** All objects of the scene, by object ID. */
+    private final SparseArray<Entry> mObjects = new SparseArray<Entry>();
+
+    /** The registered objects, by object ID. */
+    private final SparseArray<Entry> mRegistered = new SparseArray<Entry>();
+
+    /** Objects whose registration failed, not retried while in the window. */
+    private final SparseArray<Entry> mFailed = new SparseArray<Entry>();
+
+    /** The entries sorted by position, or null if it must be rebuilt. */
+    private Entry[] mIndex;
+
+    /** The azimuths of {@link #mIndex}, for searching. */
+    private float[] mAzimuths;
+
+    /** */
+    private float mHeading;
+
+    /** */
+    private float mElevation;
+
+    /** True once the view has been set. */
+    private boolean mHasView;
+
+    /** */
+    private int mFailedCount;
+
+    /**
+     * Creates a manager with a window without elevation limit and the
+     * default margin.
+     *
+     * @param utils       The instance used to register objects.
+     * @param windowWidth The width of the window around the heading, in
+     *                    degrees.
+     */
+    public ARSceneManager(final SmartEyeglassControlUtils utils, final float windowWidth) {
+        this(utils, windowWidth, Float.POSITIVE_INFINITY, DEFAULT_MARGIN);
+    }
+
+    /**
+     * Creates a manager.
+     *
+     * @param utils        The instance used to register objects.
+     * @param windowWidth  The width of the window around the heading, in
+     *                     degrees.
+     * @param windowHeight The height of the window around the elevation of
+     *                     the view, in degrees, or
+     *                     {@link Float#POSITIVE_INFINITY} for no limit.
+     * @param margin       How far, in degrees, a registered object may move
+     *                     out of the window before it is deleted. This keeps
+     *                     objects at the edge of the window from being
+     *                     registered and deleted over and over.
+     */
+    public ARSceneManager(final SmartEyeglassControlUtils utils, final float windowWidth,
+            final float windowHeight, final float margin) {
+        if (utils == null) {
+            throw new IllegalArgumentException("utils has illegal value");
+        }
+        if (!(windowWidth > 0)) {
+            throw new IllegalArgumentException("windowWidth has illegal value");
+        }
+        if (!(windowHeight > 0)) {
+            throw new IllegalArgumentException("windowHeight has illegal value");
+        }
+        if (!(margin >= 0)) {
+            throw new IllegalArgumentException("margin has illegal value");
+        }
+        mUtils = utils;
+        mHalfWidth = Math.min(windowWidth, FULL_ROTATION_DEGREE) / 2;
+        mHalfHeight = windowHeight / 2;
+        mMargin = margin;
+    }
+
+    /**
+     * Adds an object to the scene. It is registered with the next view
+     * update, if it is inside the window.
+     *
+     * @param object The object, with a unique positive object ID.
+     */
+    public void add(final CylindricalRenderObject object) {
+        if (object == null || object.getObjectId() <= 0) {
+            throw new IllegalArgumentException("object has illegal value");
+        }
+        remove(object.getObjectId());
+        mObjects.put(object.getObjectId(), new Entry(object));
+        mIndex = null;
+    }
+
+    /**
+     * Removes an object from the scene, deleting it if it is registered.
+     *
+     * @param objectId The object ID.
+     */
+    public void remove(final int objectId) {
+        Entry entry = mObjects.get(objectId);
+        if (entry == null) {
+            return;
+        }
+        mObjects.remove(objectId);
+        mFailed.remove(objectId);
+        mIndex = null;
+        if (mRegistered.get(objectId) != null) {
+            mRegistered.remove(objectId);
+            mUtils.deleteARObject(entry.mObject);
+        }
+    }
+
+    /**
+     * Removes all objects from the scene, deleting the registered ones.
+     */
+    public void clear() {
+        List<RenderObject> registered = new ArrayList<RenderObject>();
+        for (int i = 0; i < mRegistered.size(); i++) {
+            registered.add(mRegistered.valueAt(i).mObject);
+        }
+        mObjects.clear();
+        mRegistered.clear();
+        mFailed.clear();
+        mIndex = null;
+        if (!registered.isEmpty()) {
+            mUtils.deleteARObjects(registered);
+        }
+    }
+
+    /**
+     * Forgets which objects are registered, without deleting them. Call this
+     * when the host has deleted all objects, for example after the rendering
+     * mode has been changed to standard rendering mode. The objects in the
+     * window are registered again with the next view update.
+     */
+    public void resetRegistrations() {
+        mRegistered.clear();
+        mFailed.clear();
+    }
+
+    /**
+     * Moves the view to a new heading, keeping its elevation.
+     *
+     * @param heading The heading, in degrees.
+     */
+    public void updateHeading(final float heading) {
+        updateView(heading, mElevation);
+    }
+
+    /**
+     * Moves the view, registering the objects that have come into the
+     * window and deleting the objects that have left it.
+     *
+     * @param heading   The heading, in degrees.
+     * @param elevation The elevation of the view, in the unit of the
+     *                  vertical object positions.
+     */
+    public void updateView(final float heading, final float elevation) {
+        mHeading = normalize(heading);
+        mElevation = elevation;
+        mHasView = true;
+        refresh();
+    }
+
+    /**
+     * Registers and deletes objects to match the current view, for example
+     * after objects have been added.
+     */
+    public void refresh() {
+        if (!mHasView) {
+            return;
+        }
+        // Delete the registered objects that are well out of the window
+        List<RenderObject> leaving = new ArrayList<RenderObject>();
+        for (int i = mRegistered.size() - 1; i >= 0; i--) {
+            Entry entry = mRegistered.valueAt(i);
+            if (!isInWindow(entry, mMargin)) {
+                leaving.add(entry.mObject);
+                mRegistered.removeAt(i);
+            }
+        }
+        for (int i = mFailed.size() - 1; i >= 0; i--) {
+            if (!isInWindow(mFailed.valueAt(i), 0)) {
+                mFailed.removeAt(i);
+            }
+        }
+        if (!leaving.isEmpty()) {
+            mUtils.deleteARObjects(leaving);
+        }
+
+        // Register the new objects in the window
+        List<RenderObject> entering = new ArrayList<RenderObject>();
+        float start = mHeading - mHalfWidth;
+        float end = mHeading + mHalfWidth;
+        if (mHalfWidth * 2 >= FULL_ROTATION_DEGREE) {
+            collect(0, FULL_ROTATION_DEGREE, entering);
+        } else if (start < 0) {
+            collect(start + FULL_ROTATION_DEGREE, FULL_ROTATION_DEGREE, entering);
+            collect(0, end, entering);
+        } else if (end >= FULL_ROTATION_DEGREE) {
+            collect(start, FULL_ROTATION_DEGREE, entering);
+            collect(0, end - FULL_ROTATION_DEGREE, entering);
+        } else {
+            collect(start, end, entering);
+        }
+        if (!entering.isEmpty()) {
+            mUtils.registerARObjects(entering);
+        }
+    }
+
+    /**
+     * Answers a request of the AR engine for an object of the scene. Call
+     * this from
+     * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onARObjectRequest(int)}.
+     *
+     * @param objectId The requested object ID.
+     * @return True if the object is part of the scene and was sent.
+     */
+    public boolean onARObjectRequest(final int objectId) {
+        Entry entry = mObjects.get(objectId);
+        if (entry == null) {
+            return false;
+        }
+        mUtils.sendARObjectResponse(entry.mObject, 0);
+        return true;
+    }
+
+    /**
+     * Handles a registration result. Call this from
+     * {@link com.sony.smarteyeglass.extension.util.SmartEyeglassEventListener#onARRegistrationResult(int, int)}.
+     * An object that could not be registered is not retried until it has
+     * left the window and come back.
+     *
+     * @param result   The registration result.
+     * @param objectId The object ID.
+     * @return True if the object is part of the scene.
+     */
+    public boolean onARRegistrationResult(final int result, final int objectId) {
+        Entry entry = mObjects.get(objectId);
+        if (entry == null) {
+            return false;
+        }
+        if (result != SmartEyeglassControl.Intents.AR_RESULT_OK
+                && mRegistered.get(objectId) != null) {
+            mRegistered.remove(objectId);
+            mFailed.put(objectId, entry);
+            mFailedCount++;
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of objects in the scene.
+     */
+    public int getObjectCount() {
+        return mObjects.size();
+    }
+
+    /**
+     * @return The number of objects currently registered.
+     */
+    public int getRegisteredCount() {
+        return mRegistered.size();
+    }
+
+    /**
+     * @return The number of registrations the host has refused, for example
+     *         for lack of memory.
+     */
+    public int getFailedCount() {
+        return mFailedCount;
+    }
+
+    /**
+     * Adds the unregistered objects inside the window with an azimuth from
+     * start up to end.
+     */
+    private void collect(final float start, final float end, final List<RenderObject> out) {
+        buildIndex();
+        int i = lowerBound(start);
+        for (; i < mIndex.length && mAzimuths[i] <= end; i++) {
+            Entry entry = mIndex[i];
+            int id = entry.mObject.getObjectId();
+            if (mRegistered.get(id) != null || mFailed.get(id) != null) {
+                continue;
+            }
+            if (Math.abs(entry.mElevation - mElevation) > mHalfHeight) {
+                continue;
+            }
+            mRegistered.put(id, entry);
+            out.add(entry.mObject);
+        }
+    }
+
+    /** */
+    private void buildIndex() {
+        if (mIndex != null) {
+            return;
+        }
+        mIndex = new Entry[mObjects.size()];
+        for (int i = 0; i < mIndex.length; i++) {
+            mIndex[i] = mObjects.valueAt(i);
+        }
+        Arrays.sort(mIndex, POSITION_ORDER);
+        mAzimuths = new float[mIndex.length];
+        for (int i = 0; i < mIndex.length; i++) {
+            mAzimuths[i] = mIndex[i].mAzimuth;
+        }
+    }
+
+    /** Returns the first index with an azimuth not below the value. */
+    private int lowerBound(final float azimuth) {
+        int low = 0;
+        int high = mAzimuths.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mAzimuths[mid] < azimuth) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** */
+    private boolean isInWindow(final Entry entry, final float margin) {
+        float distance = Math.abs(normalize(entry.mAzimuth - mHeading + HALF_ROTATION_DEGREE)
+                - HALF_ROTATION_DEGREE);
+        return distance <= mHalfWidth + margin
+                && Math.abs(entry.mElevation - mElevation) <= mHalfHeight + margin;
+    }
+
+    /** Returns the angle from 0 up to 360 degrees. */
+    private static float normalize(final float degrees) {
+        float result = degrees % FULL_ROTATION_DEGREE;
+        if (result < 0) {
+            result += FULL_ROTATION_DEGREE;
+        }
+        // -0.0001 % 360 + 360 rounds to 360
+        return (result >= FULL_ROTATION_DEGREE) ? 0 : result;
+    }
+}
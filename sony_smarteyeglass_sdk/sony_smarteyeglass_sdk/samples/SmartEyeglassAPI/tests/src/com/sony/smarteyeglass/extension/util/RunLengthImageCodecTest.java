@@ -0,0 +1,155 @@
+/*
+Copyright (c) 2013, Sony Corporation.
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Corporation nor the names
+  of its contributors may be used to endorse or promote products derived from
+  this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sony.smarteyeglass.extension.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Round-trip tests for {@link RunLengthImageCodec}.
+ */
+public class RunLengthImageCodecTest extends TestCase {
+
+    /** With 256 levels the gray level reduction keeps every value. */
+    private final RunLengthImageCodec mCodec = new RunLengthImageCodec(256);
+
+    /** */
+    private byte[] roundTrip(final byte[] pixels) {
+        byte[] encoded = mCodec.encode(pixels, pixels.length);
+        assertTrue(encoded.length <= RunLengthImageCodec.getMaxEncodedLength(pixels.length));
+        return RunLengthImageCodec.decode(encoded, pixels.length);
+    }
+
+    public void testEmptyInput() {
+        byte[] encoded = mCodec.encode(new byte[0], 0);
+        assertEquals(0, encoded.length);
+        assertEquals(0, RunLengthImageCodec.decode(encoded, 0).length);
+    }
+
+    public void testSinglePixel() {
+        byte[] pixels = {(byte) 0x80};
+        assertTrue(Arrays.equals(pixels, roundTrip(pixels)));
+    }
+
+    public void testSingleValueRun() {
+        byte[] pixels = new byte[100];
+        Arrays.fill(pixels, (byte) 0xff);
+        byte[] encoded = mCodec.encode(pixels, pixels.length);
+        assertEquals(2, encoded.length);
+        assertTrue(Arrays.equals(pixels, RunLengthImageCodec.decode(encoded, pixels.length)));
+    }
+
+    public void testMaxRunLength() {
+        byte[] pixels = new byte[128];
+        byte[] encoded = mCodec.encode(pixels, pixels.length);
+        assertEquals(2, encoded.length);
+        assertEquals(-127, encoded[0]);
+        assertTrue(Arrays.equals(pixels, RunLengthImageCodec.decode(encoded, pixels.length)));
+    }
+
+    public void testRunLongerThanMaxIsSplit() {
+        byte[] pixels = new byte[128 * 3 + 5];
+        Arrays.fill(pixels, (byte) 7);
+        byte[] encoded = mCodec.encode(pixels, pixels.length);
+        assertEquals(8, encoded.length);
+        assertTrue(Arrays.equals(pixels, RunLengthImageCodec.decode(encoded, pixels.length)));
+    }
+
+    public void testMaxLiteralLength() {
+        byte[] pixels = new byte[128 * 2 + 1];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) i;
+        }
+        byte[] encoded = mCodec.encode(pixels, pixels.length);
+        assertEquals(RunLengthImageCodec.getMaxEncodedLength(pixels.length), encoded.length);
+        assertTrue(Arrays.equals(pixels, RunLengthImageCodec.decode(encoded, pixels.length)));
+    }
+
+    public void testMixedRunsAndLiterals() {
+        byte[] pixels = {1, 2, 3, 3, 3, 3, 4, 5, 5, 6, 6, 6};
+        assertTrue(Arrays.equals(pixels, roundTrip(pixels)));
+    }
+
+    public void testRandomData() {
+        Random random = new Random(42);
+        for (int n = 0; n < 50; n++) {
+            byte[] pixels = new byte[random.nextInt(2000)];
+            // Short runs of a few values mix literals and runs.
+            for (int i = 0; i < pixels.length; ) {
+                byte value = (byte) random.nextInt(4);
+                int run = 1 + random.nextInt(random.nextBoolean() ? 3 : 300);
+                for (int j = 0; j < run && i < pixels.length; j++) {
+                    pixels[i++] = value;
+                }
+            }
+            assertTrue(Arrays.equals(pixels, roundTrip(pixels)));
+        }
+    }
+
+    public void testRandomNoise() {
+        Random random = new Random(7);
+        byte[] pixels = new byte[419 * 138];
+        random.nextBytes(pixels);
+        assertTrue(Arrays.equals(pixels, roundTrip(pixels)));
+    }
+
+    public void testGrayLevelsReduceValues() {
+        RunLengthImageCodec codec = new RunLengthImageCodec(2);
+        byte[] pixels = {0, 10, (byte) 200, (byte) 255};
+        byte[] decoded = RunLengthImageCodec.decode(codec.encode(pixels, pixels.length),
+                pixels.length);
+        assertTrue(Arrays.equals(new byte[] {0, 0, (byte) 255, (byte) 255}, decoded));
+    }
+
+    public void testDecodeRejectsWrongPixelCount() {
+        byte[] encoded = mCodec.encode(new byte[10], 10);
+        try {
+            RunLengthImageCodec.decode(encoded, 11);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    public void testDecodeRejectsTruncatedData() {
+        byte[] pixels = {1, 2, 3, 4};
+        byte[] encoded = mCodec.encode(pixels, pixels.length);
+        try {
+            RunLengthImageCodec.decode(Arrays.copyOf(encoded, encoded.length - 1), pixels.length);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
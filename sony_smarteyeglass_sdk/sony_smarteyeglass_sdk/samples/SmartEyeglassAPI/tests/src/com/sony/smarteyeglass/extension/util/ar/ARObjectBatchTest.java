@@ -0,0 +1,196 @@
+/*
+Copyright (c) 2011, Sony Mobile Communications Inc.
+Copyright (c) 2014, Sony Corporation
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions are met:
+
+ * Redistributions of source code must retain the above copyright notice, this
+ list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above copyright notice,
+ this list of conditions and the following disclaimer in the documentation
+ and/or other materials provided with the distribution.
+
+ * Neither the name of the Sony Mobile Communications Inc.
+ nor the names of its contributors may be used to endorse or promote
+ products derived from this software without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sony.smarteyeglass.extension.util.ar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.sony.smarteyeglass.SmartEyeglassControl;
+import com.sonyericsson.extras.liveware.aef.control.Control;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+/**
+ * Tests for {@link ARObjectBatch}. Batches are unpacked the way a host
+ * handles them and compared with the single-object intents.
+ */
+public class ARObjectBatchTest extends TestCase {
+
+    /** */
+    private static final String PACKAGE_NAME = "com.example.ar";
+
+    /** Creates objects of both coordinate types. */
+    private static List<RenderObject> objects(final int count) {
+        List<RenderObject> objects = new ArrayList<RenderObject>();
+        for (int i = 1; i <= count; i++) {
+            if (i % 2 == 0) {
+                objects.add(new GlassesRenderObject(i, null, i % 5, i, -i,
+                        SmartEyeglassControl.Intents.AR_OBJECT_TYPE_STATIC_IMAGE));
+            } else {
+                objects.add(new CylindricalRenderObject(i, null, i % 5,
+                        SmartEyeglassControl.Intents.AR_OBJECT_TYPE_ANIMATED_IMAGE, i * 3f, i / 10f));
+            }
+        }
+        return objects;
+    }
+
+    /** Unpacks batches the way a host does, after stamping the package. */
+    private static List<Intent> unpackAll(final List<Intent> batches) {
+        List<Intent> intents = new ArrayList<Intent>();
+        for (Intent batch : batches) {
+            batch.putExtra(Control.Intents.EXTRA_AEA_PACKAGE_NAME, PACKAGE_NAME);
+            intents.addAll(ARObjectBatch.unpack(batch));
+        }
+        return intents;
+    }
+
+    /** Checks that two intents have the same action and extras. */
+    private static void assertSameIntent(final Intent expected, final Intent actual) {
+        assertEquals(expected.getAction(), actual.getAction());
+        Bundle expectedExtras = expected.getExtras();
+        Bundle actualExtras = actual.getExtras();
+        assertEquals(expectedExtras.keySet(), actualExtras.keySet());
+        for (String key : expectedExtras.keySet()) {
+            assertEquals(key, expectedExtras.get(key), actualExtras.get(key));
+        }
+    }
+
+    /** */
+    private static Intent single(final String action) {
+        Intent intent = new Intent(action);
+        intent.putExtra(Control.Intents.EXTRA_AEA_PACKAGE_NAME, PACKAGE_NAME);
+        return intent;
+    }
+
+    public void testRegisterRoundTrip() {
+        List<RenderObject> objects = objects(5);
+        List<Intent> batches = ARObjectBatch.toRegisterIntents(objects);
+        assertEquals(1, batches.size());
+        assertEquals(SmartEyeglassControl.Intents.CONTROL_AR_REGISTER_OBJECTS_REQUEST_INTENT,
+                batches.get(0).getAction());
+        List<Intent> intents = unpackAll(batches);
+        assertEquals(objects.size(), intents.size());
+        for (int i = 0; i < objects.size(); i++) {
+            Intent expected = single(
+                    SmartEyeglassControl.Intents.CONTROL_AR_REGISTER_OBJECT_REQUEST_INTENT);
+            objects.get(i).toRegisterExtras(expected);
+            assertSameIntent(expected, intents.get(i));
+        }
+    }
+
+    public void testMoveRoundTrip() {
+        List<RenderObject> objects = objects(7);
+        List<Intent> intents = unpackAll(ARObjectBatch.toMoveIntents(objects));
+        assertEquals(objects.size(), intents.size());
+        for (int i = 0; i < objects.size(); i++) {
+            Intent expected = single(SmartEyeglassControl.Intents.CONTROL_AR_MOVE_OBJECT_INTENT);
+            objects.get(i).toMoveExtras(expected);
+            assertSameIntent(expected, intents.get(i));
+        }
+    }
+
+    public void testOrderRoundTrip() {
+        List<RenderObject> objects = objects(3);
+        List<Intent> intents = unpackAll(ARObjectBatch.toOrderIntents(objects));
+        assertEquals(objects.size(), intents.size());
+        for (int i = 0; i < objects.size(); i++) {
+            Intent expected = single(
+                    SmartEyeglassControl.Intents.CONTROL_AR_CHANGE_OBJECT_ORDER_INTENT);
+            objects.get(i).toOrderExtras(expected);
+            assertSameIntent(expected, intents.get(i));
+        }
+    }
+
+    public void testDeleteRoundTrip() {
+        List<RenderObject> objects = objects(4);
+        List<Intent> intents = unpackAll(ARObjectBatch.toDeleteIntents(objects));
+        assertEquals(objects.size(), intents.size());
+        for (int i = 0; i < objects.size(); i++) {
+            Intent expected = single(SmartEyeglassControl.Intents.CONTROL_AR_DELETE_OBJECT_INTENT);
+            expected.putExtra(SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_ID,
+                    objects.get(i).getObjectId());
+            assertSameIntent(expected, intents.get(i));
+        }
+    }
+
+    public void testLargeBatchesAreSplit() {
+        int count = ARObjectBatch.MAX_OBJECTS_PER_INTENT * 2 + 1;
+        List<RenderObject> objects = objects(count);
+
+        List<Intent> register = ARObjectBatch.toRegisterIntents(objects);
+        assertEquals(3, register.size());
+        List<Intent> delete = ARObjectBatch.toDeleteIntents(objects);
+        assertEquals(3, delete.size());
+        assertEquals(1, delete.get(2).getIntArrayExtra(
+                SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_IDS).length);
+
+        List<Intent> registered = unpackAll(register);
+        List<Intent> deleted = unpackAll(delete);
+        assertEquals(count, registered.size());
+        assertEquals(count, deleted.size());
+        for (int i = 0; i < count; i++) {
+            int id = objects.get(i).getObjectId();
+            assertEquals(id, registered.get(i).getIntExtra(
+                    SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_ID, -1));
+            assertEquals(id, deleted.get(i).getIntExtra(
+                    SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_ID, -1));
+        }
+    }
+
+    public void testEmptyCollection() {
+        List<RenderObject> objects = objects(0);
+        assertTrue(ARObjectBatch.toRegisterIntents(objects).isEmpty());
+        assertTrue(ARObjectBatch.toMoveIntents(objects).isEmpty());
+        assertTrue(ARObjectBatch.toOrderIntents(objects).isEmpty());
+        assertTrue(ARObjectBatch.toDeleteIntents(objects).isEmpty());
+    }
+
+    public void testUnpackIgnoresOtherIntents() {
+        Intent single = new Intent(SmartEyeglassControl.Intents.CONTROL_AR_MOVE_OBJECT_INTENT);
+        assertTrue(ARObjectBatch.unpack(single).isEmpty());
+        Intent noList = new Intent(SmartEyeglassControl.Intents.CONTROL_AR_MOVE_OBJECTS_INTENT);
+        assertTrue(ARObjectBatch.unpack(noList).isEmpty());
+        Intent noIds = new Intent(SmartEyeglassControl.Intents.CONTROL_AR_DELETE_OBJECTS_INTENT);
+        assertTrue(ARObjectBatch.unpack(noIds).isEmpty());
+    }
+
+    public void testDeleteIdsInOrder() {
+        List<RenderObject> objects = objects(3);
+        int[] ids = ARObjectBatch.toDeleteIntents(objects).get(0).getIntArrayExtra(
+                SmartEyeglassControl.Intents.EXTRA_AR_OBJECT_IDS);
+        assertTrue(Arrays.equals(new int[] {1, 2, 3}, ids));
+    }
+}